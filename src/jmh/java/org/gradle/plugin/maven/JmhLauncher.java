@@ -0,0 +1,19 @@
+package org.gradle.plugin.maven;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs JMH with the arguments of the {@code jmhArgs} project property, given as a single command line
+ * and split like the surefire {@code argLine}, so quoted values may contain spaces.
+ */
+public class JmhLauncher {
+
+    public static void main(String[] commandLines) throws Exception {
+        List<String> arguments = new ArrayList<String>();
+        for (String commandLine : commandLines) {
+            arguments.addAll(ObjectConverter.commandLine2Arguments(commandLine));
+        }
+        org.openjdk.jmh.Main.main(arguments.toArray(new String[arguments.size()]));
+    }
+}
@@ -0,0 +1,30 @@
+package org.gradle.plugin.maven;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps every Maven scope of jar and war modules to its Gradle configuration, the lookup done for each dependency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ObjectConverterBenchmark {
+
+    private static final String[] SCOPES = {"compile", "provided", "runtime", "test"};
+    private static final String[] PACKAGINGS = {"jar", "war"};
+
+    @Benchmark
+    public void scope2Configuration(Blackhole blackhole) {
+        for (String packaging : PACKAGINGS) {
+            for (String scope : SCOPES) {
+                blackhole.consume(ObjectConverter.scope2Configuration(scope, packaging));
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.gradle.plugin.maven;
+
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the plugin to a fresh Gradle project tree of a synthetic reactor, with a cold or a warm metadata cache,
+ * and wires the dependencies of projects already configured in lazy mode on their own.
+ * The test fixture projects never finish evaluation, so the deferred dependency pass is run explicitly.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PluginApplyBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Reactor {
+
+        @Param({"10", "100", "1000"})
+        private int modules;
+
+        @Param({"3"})
+        private int fanOut;
+
+        @Param({"2"})
+        private int parentDepth;
+
+        @Param({"2"})
+        private int exclusions;
+
+        @Param({"true", "false"})
+        private boolean warmCache;
+
+        private SyntheticReactor reactor;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            reactor = new SyntheticReactor(SyntheticReactor.createTempDir("m2metadata-jmh"), modules, fanOut, parentDepth, exclusions, 2).generate();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            SyntheticReactor.delete(reactor.getRootDir());
+        }
+
+        List<Project> newProjects(boolean lazy) {
+            if (!warmCache) {
+                SyntheticReactor.delete(new File(reactor.getRootDir(), ".gradle"));
+            }
+            List<Project> projects = new ArrayList<Project>();
+            Project rootProject = ProjectBuilder.builder().withProjectDir(reactor.getRootDir()).build();
+            if (lazy) {
+                rootProject.setProperty(PluginOptions.LAZY_CONFIGURATION, "true");
+            }
+            projects.add(rootProject);
+            for (File moduleDir : reactor.getModuleDirs().subList(1, reactor.getModuleDirs().size())) {
+                projects.add(ProjectBuilder.builder().withName(moduleDir.getName()).withProjectDir(moduleDir).withParent(rootProject).build());
+            }
+            return projects;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class NewProjects {
+        private List<Project> projects;
+
+        @Setup(Level.Invocation)
+        public void setUp(Reactor reactor) {
+            projects = reactor.newProjects(false);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            MavenSessionService.get(projects.get(0)).dispose();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class AppliedProjects {
+        private List<Project> projects;
+
+        @Setup(Level.Invocation)
+        public void setUp(Reactor reactor) {
+            projects = reactor.newProjects(true);
+            for (Project project : projects) {
+                new GradleM2MetadataPlugin().apply(project);
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            MavenSessionService.get(projects.get(0)).dispose();
+        }
+    }
+
+    @Benchmark
+    public MavenSessionService apply(NewProjects state) throws Exception {
+        for (Project project : state.projects) {
+            new GradleM2MetadataPlugin().apply(project);
+        }
+        return MavenSessionService.get(state.projects.get(0));
+    }
+
+    @Benchmark
+    public MavenSessionService addDependencies(AppliedProjects state) throws Exception {
+        MavenSessionService sessionService = MavenSessionService.get(state.projects.get(0));
+        sessionService.getDeferredConfiguration().run(sessionService);
+        return sessionService;
+    }
+}
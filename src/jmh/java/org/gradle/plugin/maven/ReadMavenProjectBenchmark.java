@@ -0,0 +1,133 @@
+package org.gradle.plugin.maven;
+
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionRequestPopulator;
+import org.apache.maven.model.building.ModelBuildingRequest;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectBuilder;
+import org.apache.maven.project.ProjectBuildingRequest;
+import org.apache.maven.settings.Settings;
+import org.codehaus.plexus.DefaultContainerConfiguration;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.classworlds.ClassWorld;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a synthetic reactor the way {@link MavenSessionService} does on a cache miss, sequentially and in parallel,
+ * reads its modules with the {@link FastPomReader} and loads them from a warm {@link ModuleMetadataCache}.
+ * Settings are empty and offline, nothing is downloaded.
+ * The setup fails if the fast reader's metadata of a module differs from the embedder's.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReadMavenProjectBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int modules;
+
+    @Param({"3"})
+    private int fanOut;
+
+    @Param({"2"})
+    private int parentDepth;
+
+    @Param({"2"})
+    private int exclusions;
+
+    private SyntheticReactor reactor;
+    private DefaultPlexusContainer container;
+    private ProjectBuilder builder;
+    private ProjectBuildingRequest buildingRequest;
+    private ModuleMetadataCache metadataCache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        reactor = new SyntheticReactor(SyntheticReactor.createTempDir("m2metadata-jmh"), modules, fanOut, parentDepth, exclusions, 2).generate();
+        container = new DefaultPlexusContainer(new DefaultContainerConfiguration()
+                .setClassWorld(new ClassWorld("plexus.core", getClass().getClassLoader()))
+                .setName("mavenCore"));
+        builder = container.lookup(ProjectBuilder.class);
+        Settings settings = new Settings();
+        settings.setOffline(true);
+        MavenExecutionRequest executionRequest = new DefaultMavenExecutionRequest();
+        MavenExecutionRequestPopulator populator = container.lookup(MavenExecutionRequestPopulator.class);
+        populator.populateFromSettings(executionRequest, settings);
+        populator.populateDefaults(executionRequest);
+        buildingRequest = executionRequest.getProjectBuildingRequest();
+        buildingRequest.setValidationLevel(ModelBuildingRequest.VALIDATION_LEVEL_MINIMAL);
+
+        File noSettings = new File(reactor.getRootDir(), "settings.xml");
+        metadataCache = new ModuleMetadataCache(reactor.getRootDir(), "embedder", noSettings);
+        MavenReactor mavenReactor = MavenReactor.read(builder, rootPom(), buildingRequest);
+        FastPomReader fastPomReader = new FastPomReader(noSettings);
+        for (File moduleDir : reactor.getModuleDirs()) {
+            File basedir = moduleDir.getCanonicalFile();
+            MavenProject mavenProject = mavenReactor.findByBasedir(basedir);
+            ModuleMetadata module = ModuleMetadata.from(mavenProject);
+            if (!Arrays.equals(serialize(module), serialize(fastPomReader.read(basedir)))) {
+                throw new IllegalStateException("the fast POM reader and the embedder read " + basedir + " differently");
+            }
+            metadataCache.store(basedir, metadataCache.key(basedir), module);
+        }
+    }
+
+    private static byte[] serialize(ModuleMetadata module) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        module.writeTo(out);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        container.dispose();
+        SyntheticReactor.delete(reactor.getRootDir());
+    }
+
+    @Benchmark
+    public List<MavenProject> readReactor() throws Exception {
+        return MavenReactor.read(builder, rootPom(), buildingRequest).getProjects();
+    }
+
+    @Benchmark
+    public List<MavenProject> readReactorParallel() throws Exception {
+        ProjectBuildingRequest request = MavenReactor.copyOf(buildingRequest);
+        request.setRepositoryCache(null); //a new shared cache per invocation, nothing resolved by the previous ones
+        return MavenReactor.readParallel(builder, rootPom(), request, Runtime.getRuntime().availableProcessors()).getProjects();
+    }
+
+    @Benchmark
+    public void loadMetadataCache(Blackhole blackhole) throws Exception {
+        for (File moduleDir : reactor.getModuleDirs()) {
+            File basedir = moduleDir.getCanonicalFile();
+            blackhole.consume(metadataCache.load(basedir, metadataCache.key(basedir)));
+        }
+    }
+
+    @Benchmark
+    public void readPomFast(Blackhole blackhole) throws Exception {
+        FastPomReader reader = new FastPomReader(new File(reactor.getRootDir(), "settings.xml"));
+        for (File moduleDir : reactor.getModuleDirs()) {
+            blackhole.consume(reader.read(moduleDir));
+        }
+    }
+
+    private File rootPom() {
+        return new File(reactor.getRootDir(), PomFiles.POM_FILE_NAME);
+    }
+}
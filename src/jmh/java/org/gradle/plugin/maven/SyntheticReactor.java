@@ -0,0 +1,159 @@
+package org.gradle.plugin.maven;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Generates a Maven reactor on disk for the benchmarks: a root aggregator, a chain of parent POMs
+ * and {@code modules} jar modules, each depending on up to {@code fanOut} earlier modules and on external
+ * libraries with exclusions. Every {@code testScopeEvery}-th module dependency is in test scope.
+ * The packaging of the modules is a property of the root, so it's interpolated like the versions.
+ * Only reactor-local POMs are referenced, reading the reactor needs no network.
+ */
+class SyntheticReactor {
+
+    static final String GROUP_ID = "org.example.synthetic";
+    static final String VERSION = "1.0-SNAPSHOT";
+
+    private final File rootDir;
+    private final int modules;
+    private final int fanOut;
+    private final int parentDepth;
+    private final int exclusions;
+    private final int testScopeEvery;
+
+    SyntheticReactor(File rootDir, int modules, int fanOut, int parentDepth, int exclusions, int testScopeEvery) {
+        this.rootDir = rootDir;
+        this.modules = modules;
+        this.fanOut = fanOut;
+        this.parentDepth = parentDepth;
+        this.exclusions = exclusions;
+        this.testScopeEvery = testScopeEvery;
+    }
+
+    public static File createTempDir(String prefix) throws IOException {
+        File dir = File.createTempFile(prefix, "");
+        if (!dir.delete() || !dir.mkdirs()) {
+            throw new IOException("can't create " + dir);
+        }
+        return dir;
+    }
+
+    public static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    public File getRootDir() {
+        return rootDir;
+    }
+
+    /**
+     * @return the directories of all the generated POMs, the root first, then the parents, then the modules
+     */
+    public List<File> getModuleDirs() {
+        List<File> dirs = new ArrayList<File>();
+        dirs.add(rootDir);
+        for (int i = 1; i <= parentDepth; i++) {
+            dirs.add(new File(rootDir, parentName(i)));
+        }
+        for (int i = 0; i < modules; i++) {
+            dirs.add(new File(rootDir, moduleName(i)));
+        }
+        return Collections.unmodifiableList(dirs);
+    }
+
+    public SyntheticReactor generate() throws IOException {
+        StringBuilder moduleList = new StringBuilder();
+        for (int i = 1; i <= parentDepth; i++) {
+            moduleList.append("    <module>").append(parentName(i)).append("</module>\n");
+        }
+        for (int i = 0; i < modules; i++) {
+            moduleList.append("    <module>").append(moduleName(i)).append("</module>\n");
+        }
+        write(rootDir, pom(null, "root", "pom",
+                "  <properties>\n    <lib.version>2.1</lib.version>\n    <module.packaging>jar</module.packaging>\n  </properties>\n  <modules>\n" + moduleList + "  </modules>\n", ""));
+        for (int i = 1; i <= parentDepth; i++) {
+            write(new File(rootDir, parentName(i)), pom(i == 1 ? "root" : parentName(i - 1), parentName(i), "pom", "", ""));
+        }
+        String parent = parentDepth == 0 ? "root" : parentName(parentDepth);
+        for (int i = 0; i < modules; i++) {
+            write(new File(rootDir, moduleName(i)), pom(parent, moduleName(i), "${module.packaging}", dependencies(i), compilerPlugin()));
+        }
+        return this;
+    }
+
+    private String dependencies(int module) {
+        StringBuilder dependencies = new StringBuilder("  <dependencies>\n");
+        for (int i = 1; i <= fanOut && module - i >= 0; i++) {
+            String scope = testScopeEvery > 0 && i % testScopeEvery == 0 ? "test" : "compile";
+            dependencies.append(dependency(GROUP_ID, moduleName(module - i), "${project.version}", scope, 0));
+        }
+        dependencies.append(dependency("org.example.external", "lib-" + (module % 7), "${lib.version}", "compile", exclusions));
+        dependencies.append(dependency("org.testng", "testng", "5.14", "test", 0));
+        return dependencies.append("  </dependencies>\n").toString();
+    }
+
+    private String dependency(String groupId, String artifactId, String version, String scope, int exclusionCount) {
+        StringBuilder dependency = new StringBuilder();
+        dependency.append("    <dependency>\n")
+                .append("      <groupId>").append(groupId).append("</groupId>\n")
+                .append("      <artifactId>").append(artifactId).append("</artifactId>\n")
+                .append("      <version>").append(version).append("</version>\n")
+                .append("      <scope>").append(scope).append("</scope>\n");
+        if (exclusionCount > 0) {
+            dependency.append("      <exclusions>\n");
+            for (int i = 0; i < exclusionCount; i++) {
+                dependency.append("        <exclusion><groupId>org.example.excluded</groupId><artifactId>excluded-")
+                        .append(i).append("</artifactId></exclusion>\n");
+            }
+            dependency.append("      </exclusions>\n");
+        }
+        return dependency.append("    </dependency>\n").toString();
+    }
+
+    private static String compilerPlugin() {
+        return "  <build>\n    <plugins>\n      <plugin>\n        <artifactId>maven-compiler-plugin</artifactId>\n"
+                + "        <configuration><source>1.6</source><target>1.6</target></configuration>\n"
+                + "      </plugin>\n    </plugins>\n  </build>\n";
+    }
+
+    private String pom(String parent, String artifactId, String packaging, String body, String build) {
+        StringBuilder pom = new StringBuilder("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n  <modelVersion>4.0.0</modelVersion>\n");
+        if (parent != null) {
+            String relativePath = parent.equals("root") ? "../pom.xml" : "../" + parent + "/pom.xml";
+            pom.append("  <parent>\n    <groupId>").append(GROUP_ID).append("</groupId>\n    <artifactId>").append(parent)
+                    .append("</artifactId>\n    <version>").append(VERSION).append("</version>\n    <relativePath>")
+                    .append(relativePath).append("</relativePath>\n  </parent>\n");
+        } else {
+            pom.append("  <groupId>").append(GROUP_ID).append("</groupId>\n  <version>").append(VERSION).append("</version>\n");
+        }
+        pom.append("  <artifactId>").append(artifactId).append("</artifactId>\n  <packaging>").append(packaging).append("</packaging>\n");
+        return pom.append(body).append(build).append("</project>\n").toString();
+    }
+
+    private static String parentName(int index) {
+        return "parent-" + index;
+    }
+
+    private static String moduleName(int index) {
+        return "module-" + index;
+    }
+
+    private static void write(File dir, String pom) throws IOException {
+        dir.mkdirs();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(new File(dir, PomFiles.POM_FILE_NAME)), "UTF-8");
+        try {
+            writer.write(pom);
+        } finally {
+            writer.close();
+        }
+    }
+}
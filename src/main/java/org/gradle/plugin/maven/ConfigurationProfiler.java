@@ -0,0 +1,277 @@
+package org.gradle.plugin.maven;
+
+import org.gradle.api.logging.Logger;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.*;
+
+/**
+ * Wall time and allocated bytes of the plugin's configuration steps per module, and counters of the work done.
+ * Allocation is measured on JVMs supporting per thread allocation counters, it's reported as 0 elsewhere.
+ * Steps may nest, e.g. the build-wide {@code readReactor} runs inside {@code readMavenProject} of the first module,
+ * so every measurement also has its self time and allocation, without the steps nested in it on the same thread.
+ * Steps are reported with their total time, modules with the sum of the self times of their steps.
+ */
+class ConfigurationProfiler {
+
+    static final String BUILD_MODULE = "<build>";
+
+    enum Counter {
+        MODELS_BUILT, FAST_POM_READS, FAST_POM_FALLBACKS, CACHE_HITS, CACHE_MISSES, REPOSITORIES_ADDED,
+        EXTERNAL_DEPENDENCIES, PROJECT_DEPENDENCIES, TEST_OUTPUT_DEPENDENCIES
+    }
+
+    private static final Method ALLOCATED_BYTES = allocatedBytesMethod();
+
+    private final List<Measurement> measurements = new ArrayList<Measurement>();
+    private final Map<Counter, Long> counters = new EnumMap<Counter, Long>(Counter.class);
+    private final ThreadLocal<Timer> currentTimer = new ThreadLocal<Timer>();
+    private final boolean enabled;
+    private final Timer noOpTimer = new Timer();
+
+    /**
+     * @param enabled whether steps are timed, counters are kept either way
+     */
+    ConfigurationProfiler(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return a running timer of the step, to stop in a {@code finally} block, or a timer recording nothing when profiling is off
+     */
+    public Timer start(String module, String step) {
+        return enabled ? new Timer(module, step) : noOpTimer;
+    }
+
+    public synchronized void increment(Counter counter) {
+        add(counter, 1);
+    }
+
+    public synchronized void add(Counter counter, long value) {
+        Long current = counters.get(counter);
+        counters.put(counter, current == null ? value : current + value);
+    }
+
+    public synchronized long get(Counter counter) {
+        Long value = counters.get(counter);
+        return value == null ? 0 : value;
+    }
+
+    private synchronized void record(Measurement measurement) {
+        measurements.add(measurement);
+    }
+
+    /**
+     * Logs the steps sorted by total time, the slowest modules and the counters,
+     * and writes all the measurements to {@code configuration-profile.csv} and {@code configuration-profile.json}.
+     */
+    public synchronized void report(Logger logger, File reportDir) throws IOException {
+        Map<String, Aggregate> bySteps = aggregate(true);
+        Map<String, Aggregate> byModules = aggregate(false);
+        StringBuilder report = new StringBuilder(String.format("Maven metadata configuration profile:%n"));
+        report.append(String.format("%-32s %7s %10s %10s %10s %10s%n", "Step", "Calls", "Total ms", "Self ms", "Max ms", "Alloc MB"));
+        for (Aggregate aggregate : sorted(bySteps.values(), false)) {
+            report.append(String.format("%-32s %7d %10.1f %10.1f %10.1f %10.1f%n", aggregate.name, aggregate.calls,
+                    aggregate.nanos / 1e6, aggregate.selfNanos / 1e6, aggregate.maxNanos / 1e6, aggregate.bytes / (1024.0 * 1024.0)));
+        }
+        report.append(String.format("%-60s %10s %10s%n", "Slowest modules", "Self ms", "Alloc MB"));
+        List<Aggregate> modules = sorted(byModules.values(), true);
+        for (Aggregate aggregate : modules.subList(0, Math.min(10, modules.size()))) {
+            report.append(String.format("%-60s %10.1f %10.1f%n", aggregate.name, aggregate.selfNanos / 1e6, aggregate.selfBytes / (1024.0 * 1024.0)));
+        }
+        for (Counter counter : Counter.values()) {
+            report.append(String.format("%-32s %10d%n", counter.name().toLowerCase(), get(counter)));
+        }
+        logger.lifecycle(report.toString());
+        reportDir.mkdirs();
+        writeCsv(new File(reportDir, "configuration-profile.csv"));
+        writeJson(new File(reportDir, "configuration-profile.json"));
+    }
+
+    private Map<String, Aggregate> aggregate(boolean bySteps) {
+        Map<String, Aggregate> aggregates = new LinkedHashMap<String, Aggregate>();
+        for (Measurement measurement : measurements) {
+            String name = bySteps ? measurement.step : measurement.module;
+            Aggregate aggregate = aggregates.get(name);
+            if (aggregate == null) {
+                aggregate = new Aggregate(name);
+                aggregates.put(name, aggregate);
+            }
+            aggregate.add(measurement);
+        }
+        return aggregates;
+    }
+
+    private static List<Aggregate> sorted(Collection<Aggregate> aggregates, final boolean bySelfTime) {
+        List<Aggregate> sorted = new ArrayList<Aggregate>(aggregates);
+        Collections.sort(sorted, new Comparator<Aggregate>() {
+            public int compare(Aggregate o1, Aggregate o2) {
+                long nanos1 = bySelfTime ? o1.selfNanos : o1.nanos;
+                long nanos2 = bySelfTime ? o2.selfNanos : o2.nanos;
+                return nanos1 < nanos2 ? 1 : (nanos1 == nanos2 ? 0 : -1);
+            }
+        });
+        return sorted;
+    }
+
+    private void writeCsv(File file) throws IOException {
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            writer.println("module,step,nanos,selfNanos,allocatedBytes,selfAllocatedBytes");
+            for (Measurement measurement : measurements) {
+                writer.println(measurement.module + ',' + measurement.step + ',' + measurement.nanos + ',' + measurement.selfNanos
+                        + ',' + measurement.bytes + ',' + measurement.selfBytes);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void writeJson(File file) throws IOException {
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            writer.println("{");
+            writer.println("  \"counters\": {");
+            Counter[] allCounters = Counter.values();
+            for (int i = 0; i < allCounters.length; i++) {
+                writer.println("    \"" + allCounters[i].name().toLowerCase() + "\": " + get(allCounters[i]) + (i < allCounters.length - 1 ? "," : ""));
+            }
+            writer.println("  },");
+            writer.println("  \"measurements\": [");
+            for (int i = 0; i < measurements.size(); i++) {
+                Measurement measurement = measurements.get(i);
+                writer.println("    {\"module\": \"" + jsonEscape(measurement.module) + "\", \"step\": \"" + jsonEscape(measurement.step)
+                        + "\", \"nanos\": " + measurement.nanos + ", \"selfNanos\": " + measurement.selfNanos + ", \"allocatedBytes\": " + measurement.bytes
+                        + ", \"selfAllocatedBytes\": " + measurement.selfBytes + "}" + (i < measurements.size() - 1 ? "," : ""));
+            }
+            writer.println("  ]");
+            writer.println("}");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String jsonEscape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * Looked up reflectively, {@code com.sun.management.ThreadMXBean} is HotSpot specific.
+     */
+    private static Method allocatedBytesMethod() {
+        try {
+            ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+            Class<?> allocationBeanClass = Class.forName("com.sun.management.ThreadMXBean");
+            if (allocationBeanClass.isInstance(threadBean)
+                    && (Boolean) allocationBeanClass.getMethod("isThreadAllocatedMemorySupported").invoke(threadBean)
+                    && (Boolean) allocationBeanClass.getMethod("isThreadAllocatedMemoryEnabled").invoke(threadBean)) {
+                return allocationBeanClass.getMethod("getThreadAllocatedBytes", long.class);
+            }
+        } catch (Exception e) {
+            //not a HotSpot JVM
+        }
+        return null;
+    }
+
+    private static long allocatedBytes() {
+        if (ALLOCATED_BYTES == null) {
+            return 0;
+        }
+        try {
+            return (Long) ALLOCATED_BYTES.invoke(ManagementFactory.getThreadMXBean(), Thread.currentThread().getId());
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Timers started on a thread nest, a timer started while another one runs is its child until it's stopped.
+     */
+    class Timer {
+        private final boolean recording;
+        private final String module;
+        private final String step;
+        private final Timer parent;
+        private final long startNanos;
+        private final long startBytes;
+        private long childNanos;
+        private long childBytes;
+
+        private Timer() {
+            this.recording = false;
+            this.module = null;
+            this.step = null;
+            this.parent = null;
+            this.startBytes = 0;
+            this.startNanos = 0;
+        }
+
+        private Timer(String module, String step) {
+            this.recording = true;
+            this.module = module;
+            this.step = step;
+            this.parent = currentTimer.get();
+            currentTimer.set(this);
+            this.startBytes = allocatedBytes();
+            this.startNanos = System.nanoTime();
+        }
+
+        public void stop() {
+            if (!recording) {
+                return;
+            }
+            long nanos = System.nanoTime() - startNanos;
+            long bytes = allocatedBytes() - startBytes;
+            currentTimer.set(parent);
+            if (parent != null) {
+                parent.childNanos += nanos;
+                parent.childBytes += bytes;
+            }
+            record(new Measurement(module, step, nanos, nanos - childNanos, bytes, bytes - childBytes));
+        }
+    }
+
+    private static class Measurement {
+        private final String module;
+        private final String step;
+        private final long nanos;
+        private final long selfNanos;
+        private final long bytes;
+        private final long selfBytes;
+
+        private Measurement(String module, String step, long nanos, long selfNanos, long bytes, long selfBytes) {
+            this.module = module;
+            this.step = step;
+            this.nanos = nanos;
+            this.selfNanos = selfNanos;
+            this.bytes = bytes;
+            this.selfBytes = selfBytes;
+        }
+    }
+
+    private static class Aggregate {
+        private final String name;
+        private int calls;
+        private long nanos;
+        private long selfNanos;
+        private long maxNanos;
+        private long bytes;
+        private long selfBytes;
+
+        private Aggregate(String name) {
+            this.name = name;
+        }
+
+        private void add(Measurement measurement) {
+            calls++;
+            nanos += measurement.nanos;
+            selfNanos += measurement.selfNanos;
+            maxNanos = Math.max(maxNanos, measurement.nanos);
+            bytes += measurement.bytes;
+            selfBytes += measurement.selfBytes;
+        }
+    }
+}
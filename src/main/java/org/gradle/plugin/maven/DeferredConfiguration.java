@@ -0,0 +1,139 @@
+package org.gradle.plugin.maven;
+
+import org.apache.maven.execution.MavenExecutionRequestPopulationException;
+import org.apache.maven.project.ProjectBuildingException;
+import org.apache.maven.settings.building.SettingsBuildingException;
+import org.codehaus.plexus.PlexusContainerException;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.gradle.StartParameter;
+import org.gradle.api.Action;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.ResolvableDependencies;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Dependency configuration actions of the projects in lazy mode, each runs once, whichever comes first:
+ * when one of the project's configurations is about to be resolved, or in the single pass over the projects
+ * needed by the requested tasks after they are all evaluated. The pass follows the {@link ModuleGraph} order.
+ * Only the dependency wiring is skipped for the other projects, their metadata was read when the plugin was applied.
+ */
+class DeferredConfiguration {
+
+    private final Map<Project, DeferredAction> actions = new LinkedHashMap<Project, DeferredAction>();
+
+    public synchronized void defer(Project project, Runnable action) {
+        final DeferredAction deferredAction = new DeferredAction(action);
+        actions.put(project, deferredAction);
+        project.getConfigurations().all(new Action<Configuration>() { //also the configurations added later
+            public void execute(Configuration configuration) {
+                configuration.getIncoming().beforeResolve(deferredAction);
+            }
+        });
+    }
+
+    public void run(MavenSessionService sessionService) throws PlexusContainerException, ComponentLookupException, MavenExecutionRequestPopulationException, ProjectBuildingException, IOException, SettingsBuildingException {
+        synchronized (this) {
+            if (actions.isEmpty()) {
+                return;
+            }
+        }
+        ModuleGraph graph = sessionService.getModuleGraph();
+        if (!graph.getCyclicProjects().isEmpty()) {
+            sessionService.getRootProject().getLogger().warn("Maven modules {} depend on each other in a cycle", graph.getCyclicProjects());
+        }
+        Set<Project> selected = requestedProjects(sessionService.getRootProject(), graph);
+        List<DeferredAction> toRun = new ArrayList<DeferredAction>();
+        synchronized (this) {
+            Set<Project> ordered = new LinkedHashSet<Project>(graph.getProjects());
+            ordered.addAll(actions.keySet()); //projects which aren't reactor modules go last
+            for (Project project : ordered) {
+                DeferredAction action = actions.get(project);
+                if (action != null && (selected == null || selected.contains(project))) {
+                    toRun.add(action);
+                }
+            }
+            sessionService.getRootProject().getLogger().info("Configuring Maven dependencies of {} out of {} projects", toRun.size(), actions.size());
+        }
+        for (DeferredAction action : toRun) {
+            action.run();
+        }
+    }
+
+    /**
+     * @return the projects of the task paths given on the command line with the reactor modules they depend on,
+     * or {@code null} if the tasks may run in any project. Relative paths are resolved against the project
+     * of the directory Gradle was started in
+     */
+    private static Set<Project> requestedProjects(Project rootProject, ModuleGraph graph) {
+        StartParameter startParameter = rootProject.getGradle().getStartParameter();
+        List<String> taskNames = startParameter.getTaskNames();
+        if (taskNames == null || taskNames.isEmpty()) {
+            return null; //default tasks
+        }
+        Set<Project> projects = new LinkedHashSet<Project>();
+        for (String taskName : taskNames) {
+            int lastColon = taskName.lastIndexOf(':');
+            if (lastColon < 0) {
+                return null; //task name without a path runs in all the projects
+            }
+            String projectPath = taskName.substring(0, lastColon);
+            if (!projectPath.startsWith(":")) {
+                Project startProject = startProject(rootProject, startParameter.getCurrentDir());
+                if (startProject == null) {
+                    return null; //started outside the projects, can't tell
+                }
+                projectPath = startProject == rootProject ? ":" + projectPath : startProject.getPath() + ":" + projectPath;
+            }
+            Project project = projectPath.equals(":") ? rootProject : rootProject.findProject(projectPath);
+            if (project == null) {
+                return null; //abbreviated or relative path, can't tell
+            }
+            addWithReactorDependencies(project, projects, graph);
+        }
+        return projects;
+    }
+
+    private static Project startProject(Project rootProject, File currentDir) {
+        if (currentDir == null) {
+            return null;
+        }
+        for (Project project : rootProject.getAllprojects()) {
+            if (project.getProjectDir().getAbsoluteFile().equals(currentDir.getAbsoluteFile())) {
+                return project;
+            }
+        }
+        return null;
+    }
+
+    private static void addWithReactorDependencies(Project project, Set<Project> projects, ModuleGraph graph) {
+        if (projects.add(project) && graph.contains(project)) {
+            for (Project dependency : graph.getDependencies(project)) {
+                addWithReactorDependencies(dependency, projects, graph);
+            }
+        }
+    }
+
+    private static class DeferredAction implements Action<ResolvableDependencies> {
+        private final Runnable action;
+        private boolean done;
+
+        private DeferredAction(Runnable action) {
+            this.action = action;
+        }
+
+        public void execute(ResolvableDependencies resolvableDependencies) {
+            run();
+        }
+
+        public synchronized void run() {
+            if (!done) {
+                done = true;
+                action.run();
+            }
+        }
+    }
+}
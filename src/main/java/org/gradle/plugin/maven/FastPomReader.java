@@ -0,0 +1,626 @@
+package org.gradle.plugin.maven;
+
+import org.apache.maven.artifact.ArtifactUtils;
+import org.apache.maven.settings.Mirror;
+import org.apache.maven.settings.Profile;
+import org.apache.maven.settings.Settings;
+import org.apache.maven.settings.io.xpp3.SettingsXpp3Reader;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.xml.pull.MXParser;
+import org.codehaus.plexus.util.xml.pull.XmlPullParser;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.gradle.plugin.maven.ModuleMetadata.ModuleDependency;
+import org.gradle.plugin.maven.ModuleMetadata.ModuleExclusion;
+import org.gradle.plugin.maven.ModuleMetadata.ModuleRepository;
+import org.gradle.plugin.maven.ModuleMetadata.ModuleTestSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads {@link ModuleMetadata} straight from the POM files with a pull parser, without the Maven embedder.
+ * Only the elements the plugin uses are kept. Inheritance from the local parent chain, {@code ${property}} interpolation,
+ * and dependency management are applied the way Maven does for them. Repositories are kept as declared, before the mirrors of the settings.
+ * Anything else Maven would have to resolve throws {@link UnsupportedPomException}, the module is then read by the embedder:
+ * parents which aren't on disk, profiles with activation, imported dependency management, unresolvable expressions,
+ * and settings activating profiles.
+ * Parsed POMs are kept for the lifetime of the reader, so shared parents are read once.
+ */
+class FastPomReader {
+
+    private static final String DEFAULT_PLUGIN_GROUP_ID = "org.apache.maven.plugins";
+    private static final String COMPILER_PLUGIN_KEY = DEFAULT_PLUGIN_GROUP_ID + ":maven-compiler-plugin";
+    private static final String SOURCE_PLUGIN_KEY = DEFAULT_PLUGIN_GROUP_ID + ":maven-source-plugin";
+    private static final String SUREFIRE_PLUGIN_KEY = DEFAULT_PLUGIN_GROUP_ID + ":maven-surefire-plugin";
+    private static final Set<String> COMPILED_PACKAGINGS = new HashSet<String>(Arrays.asList("jar", "war", "ejb", "ejb3", "par", "rar", "maven-plugin"));
+    private static final ModuleRepository CENTRAL = new ModuleRepository("central", "http://repo1.maven.org/maven2");
+    private static final String DEFAULT_PACKAGING = "jar";
+    private static final String DEFAULT_SCOPE = "compile";
+    private static final String DEFAULT_TYPE = "jar";
+    private static final String IMPORT_SCOPE = "import";
+    private static final String ENV_PREFIX = "env.";
+    private static final Pattern EXPRESSION = Pattern.compile("\\$\\{([^}]+)\\}");
+
+    private final Map<File, RawPom> poms = new HashMap<File, RawPom>();
+    private final RepositoryMirrors mirrors;
+    private final String unsupportedSettings;
+
+    /**
+     * @param settingsFiles the settings files, in precedence order
+     */
+    FastPomReader(File... settingsFiles) {
+        List<Mirror> mirrorList = new ArrayList<Mirror>();
+        Set<String> mirrorIds = new HashSet<String>();
+        String unsupported = null;
+        Interpolator interpolator = new Interpolator(Collections.<String, String>emptyMap(), Collections.<String, String>emptyMap(),
+                Collections.<String, String>emptyMap());
+        for (File settingsFile : settingsFiles) {
+            if (!settingsFile.isFile()) {
+                continue;
+            }
+            try {
+                Settings settings = readSettings(settingsFile);
+                if (!settings.getActiveProfiles().isEmpty()) {
+                    unsupported = settingsFile + " activates profiles";
+                }
+                for (Profile profile : settings.getProfiles()) {
+                    if (profile.getActivation() != null) {
+                        unsupported = settingsFile + " has profiles with activation";
+                    }
+                }
+                for (Mirror mirror : settings.getMirrors()) {
+                    if (mirrorIds.add(mirror.getId())) {
+                        mirror.setUrl(interpolator.interpolate(mirror.getUrl()));
+                        mirrorList.add(mirror);
+                    }
+                }
+            } catch (IOException e) {
+                unsupported = "can't read " + settingsFile + ": " + e.getMessage();
+            } catch (XmlPullParserException e) {
+                unsupported = "can't parse " + settingsFile + ": " + e.getMessage();
+            } catch (UnsupportedPomException e) {
+                unsupported = "mirror in " + settingsFile + " " + e.getMessage();
+            }
+        }
+        this.mirrors = new RepositoryMirrors(mirrorList);
+        this.unsupportedSettings = unsupported;
+    }
+
+    /**
+     * @return the mirrors of the settings files, without the ones whose URL can't be resolved
+     */
+    public RepositoryMirrors getMirrors() {
+        return mirrors;
+    }
+
+    /**
+     * @return whether the settings files can be read without the embedder, i.e. {@link #getMirrors()} are all of their mirrors
+     */
+    public boolean isSettingsSupported() {
+        return unsupportedSettings == null;
+    }
+
+    public ModuleMetadata read(File basedir) throws IOException, UnsupportedPomException {
+        if (unsupportedSettings != null) {
+            throw new UnsupportedPomException(unsupportedSettings);
+        }
+        List<RawPom> chain = parentChain(parse(new File(basedir, PomFiles.POM_FILE_NAME).getCanonicalFile()));
+        RawPom pom = chain.get(0);
+
+        Map<String, String> builtins = new HashMap<String, String>();
+        Map<String, String> modelFallbacks = new HashMap<String, String>();
+        String rawPackaging = pom.packaging != null ? pom.packaging : DEFAULT_PACKAGING;
+        putModelValue(builtins, modelFallbacks, "groupId", pom.getGroupId());
+        putModelValue(builtins, modelFallbacks, "artifactId", pom.artifactId);
+        putModelValue(builtins, modelFallbacks, "version", pom.getVersion());
+        putModelValue(builtins, modelFallbacks, "packaging", rawPackaging);
+        putModelValue(builtins, modelFallbacks, "basedir", pom.file.getParentFile().getPath());
+        putModelValue(builtins, modelFallbacks, "parent.groupId", pom.parentGroupId);
+        putModelValue(builtins, modelFallbacks, "parent.artifactId", pom.parentArtifactId);
+        putModelValue(builtins, modelFallbacks, "parent.version", pom.parentVersion);
+        builtins.put("basedir", pom.file.getParentFile().getPath());
+        Map<String, String> properties = new HashMap<String, String>();
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            properties.putAll(chain.get(i).properties);
+        }
+        Interpolator interpolator = new Interpolator(builtins, properties, modelFallbacks);
+
+        String groupId = interpolator.interpolate(pom.getGroupId());
+        String artifactId = interpolator.interpolate(pom.artifactId);
+        String version = interpolator.interpolate(pom.getVersion());
+        if (groupId == null || artifactId == null || version == null) {
+            throw new UnsupportedPomException(pom.file + " has incomplete coordinates");
+        }
+        String packaging = interpolator.interpolate(rawPackaging);
+        putModelValue(builtins, modelFallbacks, "packaging", packaging);
+
+        Map<String, RawPlugin> plugins = effectivePlugins(chain, false, interpolator);
+        Map<String, RawPlugin> managedPlugins = effectivePlugins(chain, true, interpolator);
+        Map<String, List<String>> compilerConfiguration = boundPluginConfiguration(COMPILER_PLUGIN_KEY, packaging, plugins, managedPlugins, interpolator);
+        String sourceLevel = first(compilerConfiguration, "source");
+        String targetLevel = first(compilerConfiguration, "target");
+        ModuleTestSettings testSettings = ModuleTestSettings.from(boundPluginConfiguration(SUREFIRE_PLUGIN_KEY, packaging, plugins, managedPlugins, interpolator));
+
+        // Maven merges inherited dependencies by their key as written, before interpolation
+        Map<String, RawDependency> managedDependencies = new HashMap<String, RawDependency>();
+        Set<String> rawManagedKeys = new HashSet<String>();
+        for (RawPom inherited : chain) {
+            for (RawDependency managed : inherited.managedDependencies) {
+                if (!rawManagedKeys.add(managed.key())) {
+                    continue;
+                }
+                RawDependency dependency = managed.interpolate(interpolator);
+                if (IMPORT_SCOPE.equals(dependency.scope)) {
+                    throw new UnsupportedPomException(inherited.file + " imports the dependency management of " + dependency.key());
+                }
+                if (managedDependencies.put(dependency.key(), dependency) != null) {
+                    throw new UnsupportedPomException("managed dependencies of " + pom.file + " only collide on " + dependency.key() + " after interpolation");
+                }
+            }
+        }
+        Map<String, RawDependency> inheritedDependencies = new LinkedHashMap<String, RawDependency>();
+        for (RawPom inherited : chain) {
+            for (RawDependency raw : inherited.dependencies) {
+                if (!inheritedDependencies.containsKey(raw.key())) {
+                    inheritedDependencies.put(raw.key(), raw);
+                }
+            }
+        }
+        List<ModuleDependency> dependencies = new ArrayList<ModuleDependency>(inheritedDependencies.size());
+        for (RawDependency raw : inheritedDependencies.values()) {
+            RawDependency dependency = raw.interpolate(interpolator);
+            RawDependency managed = managedDependencies.get(dependency.key());
+            String dependencyVersion = firstNonNull(dependency.version, managed == null ? null : managed.version);
+            if (dependencyVersion == null) {
+                throw new UnsupportedPomException("no version for " + dependency.key() + " in " + pom.file);
+            }
+            String scope = firstNonNull(dependency.scope, managed == null ? null : managed.scope);
+            List<String[]> rawExclusions = dependency.exclusions.isEmpty() && managed != null ? managed.exclusions : dependency.exclusions;
+            List<ModuleExclusion> exclusions = new ArrayList<ModuleExclusion>(rawExclusions.size());
+            for (String[] exclusion : rawExclusions) {
+                exclusions.add(new ModuleExclusion(exclusion[0], exclusion[1]));
+            }
+            dependencies.add(new ModuleDependency(dependency.groupId, dependency.artifactId, dependencyVersion,
+                    scope == null ? DEFAULT_SCOPE : scope, exclusions));
+        }
+
+        Map<String, ModuleRepository> repositoriesById = new LinkedHashMap<String, ModuleRepository>();
+        for (RawPom inherited : chain) {
+            for (String[] repository : inherited.repositories) {
+                if (!repositoriesById.containsKey(repository[0])) {
+                    repositoriesById.put(repository[0], new ModuleRepository(repository[0], interpolator.interpolate(repository[1])));
+                }
+            }
+        }
+        if (!repositoriesById.containsKey(CENTRAL.getId())) {
+            repositoriesById.put(CENTRAL.getId(), CENTRAL);
+        }
+        List<ModuleRepository> repositories = new ArrayList<ModuleRepository>(repositoriesById.values());
+
+        return new ModuleMetadata(pom.file.getParentFile(), groupId, artifactId, version, packaging, ArtifactUtils.isSnapshot(version),
+                sourceLevel, targetLevel, plugins.containsKey(SOURCE_PLUGIN_KEY), repositories, dependencies, testSettings);
+    }
+
+    /**
+     * @return the given POM followed by its ancestors, all of them on disk
+     */
+    private List<RawPom> parentChain(RawPom pom) throws IOException, UnsupportedPomException {
+        List<RawPom> chain = new ArrayList<RawPom>();
+        chain.add(pom);
+        while (pom.hasParent) {
+            String parentCoordinates = pom.parentGroupId + ':' + pom.parentArtifactId + ':' + pom.parentVersion;
+            File parentFile = PomFiles.localParentPom(pom.file, pom.parentRelativePath);
+            if (parentFile == null) {
+                throw new UnsupportedPomException("parent " + parentCoordinates + " of " + pom.file + " isn't on disk");
+            }
+            RawPom parent = parse(parentFile);
+            if (!parentCoordinates.equals(parent.getGroupId() + ':' + parent.artifactId + ':' + parent.getVersion())) {
+                throw new UnsupportedPomException("parent " + parentCoordinates + " of " + pom.file + " isn't " + parentFile);
+            }
+            if (chain.contains(parent)) {
+                throw new UnsupportedPomException("parents of " + pom.file + " form a cycle");
+            }
+            chain.add(parent);
+            pom = parent;
+        }
+        for (RawPom inherited : chain) {
+            if (inherited.activatedProfiles) {
+                throw new UnsupportedPomException(inherited.file + " has profiles with activation");
+            }
+        }
+        return chain;
+    }
+
+    /**
+     * @return the interpolated configuration of a plugin of the build, or of the default lifecycle of the packaging,
+     * merged with its plugin management, empty if the plugin isn't part of the build
+     */
+    private static Map<String, List<String>> boundPluginConfiguration(String key, String packaging, Map<String, RawPlugin> plugins,
+                                                                      Map<String, RawPlugin> managedPlugins, Interpolator interpolator) throws UnsupportedPomException {
+        Map<String, List<String>> result = new LinkedHashMap<String, List<String>>();
+        if (plugins.containsKey(key) || COMPILED_PACKAGINGS.contains(packaging)) {
+            RawPlugin plugin = plugins.get(key);
+            RawPlugin managedPlugin = managedPlugins.get(key);
+            Map<String, List<String>> configuration = mergeConfiguration(plugin == null ? null : plugin.configuration,
+                    managedPlugin == null ? null : managedPlugin.configuration);
+            for (Map.Entry<String, List<String>> entry : configuration.entrySet()) {
+                List<String> values = new ArrayList<String>(entry.getValue().size());
+                for (String value : entry.getValue()) {
+                    values.add(interpolator.interpolate(value));
+                }
+                result.put(entry.getKey(), values);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Merges configurations element by element, as Maven does by default: the dominant values of an element
+     * replace the recessive ones, elements only in the recessive configuration are kept after the dominant ones.
+     */
+    private static Map<String, List<String>> mergeConfiguration(Map<String, List<String>> dominant, Map<String, List<String>> recessive) {
+        Map<String, List<String>> merged = new LinkedHashMap<String, List<String>>();
+        if (dominant != null) {
+            merged.putAll(dominant);
+        }
+        if (recessive != null) {
+            for (Map.Entry<String, List<String>> entry : recessive.entrySet()) {
+                if (!merged.containsKey(entry.getKey())) {
+                    merged.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return merged;
+    }
+
+    private static String first(Map<String, List<String>> configuration, String element) {
+        List<String> values = configuration.get(element);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    /**
+     * Merges the plugins of the chain, ancestors first, a plugin's configuration overrides the one it inherits.
+     */
+    private static Map<String, RawPlugin> effectivePlugins(List<RawPom> chain, boolean managed, Interpolator interpolator) throws UnsupportedPomException {
+        Map<String, RawPlugin> plugins = new HashMap<String, RawPlugin>();
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            for (RawPlugin plugin : managed ? chain.get(i).managedPlugins : chain.get(i).plugins) {
+                if (i > 0 && "false".equals(plugin.inherited)) {
+                    continue;
+                }
+                String key = firstNonNull(interpolator.interpolate(plugin.groupId), DEFAULT_PLUGIN_GROUP_ID) + ':' + interpolator.interpolate(plugin.artifactId);
+                RawPlugin inherited = plugins.get(key);
+                RawPlugin merged = new RawPlugin();
+                merged.configuration.putAll(mergeConfiguration(plugin.configuration, inherited == null ? null : inherited.configuration));
+                plugins.put(key, merged);
+            }
+        }
+        return plugins;
+    }
+
+    private RawPom parse(File pomFile) throws IOException {
+        RawPom pom = poms.get(pomFile);
+        if (pom == null) {
+            pom = new RawPom(pomFile);
+            Reader reader = ReaderFactory.newXmlReader(pomFile);
+            try {
+                XmlPullParser parser = new MXParser();
+                parser.setInput(reader);
+                List<String> paths = new ArrayList<String>();
+                StringBuilder text = new StringBuilder();
+                for (int event = parser.next(); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+                    if (event == XmlPullParser.START_TAG) {
+                        String path = paths.isEmpty() ? parser.getName() : paths.get(paths.size() - 1) + '/' + parser.getName();
+                        paths.add(path);
+                        text.setLength(0);
+                        pom.start(path);
+                    } else if (event == XmlPullParser.TEXT) {
+                        text.append(parser.getText());
+                    } else if (event == XmlPullParser.END_TAG) {
+                        pom.end(paths.remove(paths.size() - 1), text.toString().trim());
+                        text.setLength(0);
+                    }
+                }
+            } catch (XmlPullParserException e) {
+                throw new IOException("can't parse " + pomFile + ": " + e.getMessage());
+            } finally {
+                reader.close();
+            }
+            poms.put(pomFile, pom);
+        }
+        return pom;
+    }
+
+    private static Settings readSettings(File settingsFile) throws IOException, XmlPullParserException {
+        Reader reader = ReaderFactory.newXmlReader(settingsFile);
+        try {
+            return new SettingsXpp3Reader().read(reader, false);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Maven resolves {@code project.} and {@code pom.} prefixed model values first, unprefixed ones after all the properties.
+     */
+    private static void putModelValue(Map<String, String> builtins, Map<String, String> modelFallbacks, String name, String value) {
+        if (value != null) {
+            builtins.put("project." + name, value);
+            builtins.put("pom." + name, value);
+            modelFallbacks.put(name, value);
+        }
+    }
+
+    private static String firstNonNull(String first, String second) {
+        return first != null ? first : second;
+    }
+
+    static class UnsupportedPomException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedPomException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Resolves expressions against the prefixed model values and the base directory, then the POM properties,
+     * the system properties and the environment, and last the unprefixed model values.
+     */
+    private static class Interpolator {
+        private final Map<String, String> builtins;
+        private final Map<String, String> properties;
+        private final Map<String, String> modelFallbacks;
+
+        private Interpolator(Map<String, String> builtins, Map<String, String> properties, Map<String, String> modelFallbacks) {
+            this.builtins = builtins;
+            this.properties = properties;
+            this.modelFallbacks = modelFallbacks;
+        }
+
+        private String interpolate(String value) throws UnsupportedPomException {
+            return interpolate(value, new HashSet<String>());
+        }
+
+        private String interpolate(String value, Set<String> resolving) throws UnsupportedPomException {
+            if (value == null || value.indexOf("${") < 0) {
+                return value;
+            }
+            Matcher matcher = EXPRESSION.matcher(value);
+            StringBuffer result = new StringBuffer();
+            while (matcher.find()) {
+                String expression = matcher.group(1);
+                if (!resolving.add(expression)) {
+                    throw new UnsupportedPomException("${" + expression + "} refers to itself");
+                }
+                String resolved = interpolate(resolve(expression), resolving);
+                resolving.remove(expression);
+                matcher.appendReplacement(result, Matcher.quoteReplacement(resolved));
+            }
+            matcher.appendTail(result);
+            return result.toString();
+        }
+
+        private String resolve(String expression) throws UnsupportedPomException {
+            String value = builtins.get(expression);
+            if (value == null) {
+                value = properties.get(expression);
+            }
+            if (value == null) {
+                value = expression.startsWith(ENV_PREFIX) ? System.getenv(expression.substring(ENV_PREFIX.length())) : System.getProperty(expression);
+            }
+            if (value == null) {
+                value = modelFallbacks.get(expression);
+            }
+            if (value == null) {
+                throw new UnsupportedPomException("can't resolve ${" + expression + "}");
+            }
+            return value;
+        }
+    }
+
+    /**
+     * The elements of a POM file the plugin uses, as written, collected while the file is parsed.
+     */
+    private static class RawPom {
+        private static final String PARENT = "project/parent";
+        private static final String PROPERTIES = "project/properties/";
+        private static final String REPOSITORY = "project/repositories/repository";
+        private static final String DEPENDENCY = "project/dependencies/dependency";
+        private static final String MANAGED_DEPENDENCY = "project/dependencyManagement/dependencies/dependency";
+        private static final String PLUGIN = "project/build/plugins/plugin";
+        private static final String MANAGED_PLUGIN = "project/build/pluginManagement/plugins/plugin";
+        private static final String PROFILE_ACTIVATION = "project/profiles/profile/activation";
+        private static final String CONFIGURATION = "configuration/";
+
+        private final File file;
+        private String groupId;
+        private String artifactId;
+        private String version;
+        private String packaging;
+        private boolean hasParent;
+        private String parentGroupId;
+        private String parentArtifactId;
+        private String parentVersion;
+        private String parentRelativePath;
+        private boolean activatedProfiles;
+        private final Map<String, String> properties = new HashMap<String, String>();
+        private final List<String[]> repositories = new ArrayList<String[]>();
+        private final List<RawDependency> dependencies = new ArrayList<RawDependency>();
+        private final List<RawDependency> managedDependencies = new ArrayList<RawDependency>();
+        private final List<RawPlugin> plugins = new ArrayList<RawPlugin>();
+        private final List<RawPlugin> managedPlugins = new ArrayList<RawPlugin>();
+
+        private String[] repository;
+        private RawDependency dependency;
+        private String dependencyPath;
+        private String[] exclusion;
+        private RawPlugin plugin;
+        private String pluginPath;
+
+        private RawPom(File file) {
+            this.file = file;
+        }
+
+        private String getGroupId() {
+            return groupId != null ? groupId : parentGroupId;
+        }
+
+        private String getVersion() {
+            return version != null ? version : parentVersion;
+        }
+
+        private void start(String path) {
+            if (path.equals(PARENT)) {
+                hasParent = true;
+            } else if (path.equals(PROFILE_ACTIVATION)) {
+                activatedProfiles = true;
+            } else if (path.equals(REPOSITORY)) {
+                repository = new String[2];
+            } else if (path.equals(DEPENDENCY) || path.equals(MANAGED_DEPENDENCY)) {
+                dependency = new RawDependency();
+                dependencyPath = path;
+            } else if (dependency != null && path.equals(dependencyPath + "/exclusions/exclusion")) {
+                exclusion = new String[2];
+            } else if (path.equals(PLUGIN) || path.equals(MANAGED_PLUGIN)) {
+                plugin = new RawPlugin();
+                pluginPath = path;
+            }
+        }
+
+        private void end(String path, String text) {
+            if (dependency != null) {
+                endDependency(path, text);
+            } else if (plugin != null) {
+                endPlugin(path, text);
+            } else if (repository != null) {
+                if (path.equals(REPOSITORY)) {
+                    if (repository[0] != null && repository[1] != null) {
+                        repositories.add(repository);
+                    }
+                    repository = null;
+                } else if (path.equals(REPOSITORY + "/id")) {
+                    repository[0] = text;
+                } else if (path.equals(REPOSITORY + "/url")) {
+                    repository[1] = text;
+                }
+            } else if (path.startsWith(PROPERTIES) && path.indexOf('/', PROPERTIES.length()) < 0) {
+                properties.put(path.substring(PROPERTIES.length()), text);
+            } else if (path.equals("project/groupId")) {
+                groupId = text;
+            } else if (path.equals("project/artifactId")) {
+                artifactId = text;
+            } else if (path.equals("project/version")) {
+                version = text;
+            } else if (path.equals("project/packaging")) {
+                packaging = text;
+            } else if (path.equals(PARENT + "/groupId")) {
+                parentGroupId = text;
+            } else if (path.equals(PARENT + "/artifactId")) {
+                parentArtifactId = text;
+            } else if (path.equals(PARENT + "/version")) {
+                parentVersion = text;
+            } else if (path.equals(PARENT + "/relativePath")) {
+                parentRelativePath = text;
+            }
+        }
+
+        private void endDependency(String path, String text) {
+            if (path.equals(dependencyPath)) {
+                (dependencyPath.equals(DEPENDENCY) ? dependencies : managedDependencies).add(dependency);
+                dependency = null;
+                return;
+            }
+            String element = path.substring(dependencyPath.length() + 1);
+            if (exclusion != null) {
+                if (element.equals("exclusions/exclusion")) {
+                    dependency.exclusions.add(exclusion);
+                    exclusion = null;
+                } else if (element.equals("exclusions/exclusion/groupId")) {
+                    exclusion[0] = text;
+                } else if (element.equals("exclusions/exclusion/artifactId")) {
+                    exclusion[1] = text;
+                }
+            } else if (element.equals("groupId")) {
+                dependency.groupId = text;
+            } else if (element.equals("artifactId")) {
+                dependency.artifactId = text;
+            } else if (element.equals("version")) {
+                dependency.version = text;
+            } else if (element.equals("scope")) {
+                dependency.scope = text;
+            } else if (element.equals("type")) {
+                dependency.type = text;
+            } else if (element.equals("classifier")) {
+                dependency.classifier = text;
+            }
+        }
+
+        private void endPlugin(String path, String text) {
+            if (path.equals(pluginPath)) {
+                (pluginPath.equals(PLUGIN) ? plugins : managedPlugins).add(plugin);
+                plugin = null;
+                return;
+            }
+            String element = path.substring(pluginPath.length() + 1);
+            if (element.equals("groupId")) {
+                plugin.groupId = text;
+            } else if (element.equals("artifactId")) {
+                plugin.artifactId = text;
+            } else if (element.equals("inherited")) {
+                plugin.inherited = text;
+            } else if (element.startsWith(CONFIGURATION) && text.length() > 0) {
+                String configurationElement = element.substring(CONFIGURATION.length());
+                List<String> values = plugin.configuration.get(configurationElement);
+                if (values == null) {
+                    values = new ArrayList<String>();
+                    plugin.configuration.put(configurationElement, values);
+                }
+                values.add(text);
+            }
+        }
+    }
+
+    private static class RawDependency {
+        private String groupId;
+        private String artifactId;
+        private String version;
+        private String scope;
+        private String type;
+        private String classifier;
+        private List<String[]> exclusions = new ArrayList<String[]>();
+
+        private RawDependency interpolate(Interpolator interpolator) throws UnsupportedPomException {
+            RawDependency result = new RawDependency();
+            result.groupId = interpolator.interpolate(groupId);
+            result.artifactId = interpolator.interpolate(artifactId);
+            result.version = interpolator.interpolate(version);
+            result.scope = interpolator.interpolate(scope);
+            result.type = interpolator.interpolate(type);
+            result.classifier = interpolator.interpolate(classifier);
+            for (String[] exclusion : exclusions) {
+                result.exclusions.add(new String[]{interpolator.interpolate(exclusion[0]), interpolator.interpolate(exclusion[1])});
+            }
+            return result;
+        }
+
+        /**
+         * @return the management key of the dependency, as Maven's {@code groupId:artifactId:type[:classifier]}
+         */
+        private String key() {
+            String key = groupId + ':' + artifactId + ':' + (type != null ? type : DEFAULT_TYPE);
+            return classifier != null ? key + ':' + classifier : key;
+        }
+    }
+
+    private static class RawPlugin {
+        private String groupId;
+        private String artifactId;
+        private String inherited;
+        private final Map<String, List<String>> configuration = new LinkedHashMap<String, List<String>>();
+    }
+}
@@ -0,0 +1,111 @@
+package org.gradle.plugin.maven;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the static Gradle build generated from the POMs, see {@link GradleBuildGenerator}, to the output directory.
+ * In verify mode nothing is written, the task fails if the files in the output directory differ from the generated ones,
+ * e.g. when checked in build scripts are out of date with the POMs.
+ */
+public class GenerateGradleBuildTask extends DefaultTask {
+
+    static final String TASK_NAME = "generateGradleBuild";
+
+    private File outputDir;
+    private Boolean verify;
+
+    /**
+     * @return the directory the build is written to, {@link PluginOptions#getGradleBuildDir()} relative to the root project
+     * if set, {@code build/m2metadata/gradle} of the root project by default
+     */
+    public File getOutputDir() {
+        if (outputDir != null) {
+            return outputDir;
+        }
+        String gradleBuildDir = new PluginOptions(getProject().getRootProject()).getGradleBuildDir();
+        return gradleBuildDir != null ? getProject().getRootProject().file(gradleBuildDir) : new File(getProject().getRootProject().getBuildDir(), "m2metadata/gradle");
+    }
+
+    public void setOutputDir(File outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    /**
+     * @return whether to check the files in the output directory instead of writing them, {@link PluginOptions#isVerifyGradleBuild()} by default
+     */
+    public boolean isVerify() {
+        return verify != null ? verify : new PluginOptions(getProject().getRootProject()).isVerifyGradleBuild();
+    }
+
+    public void setVerify(boolean verify) {
+        this.verify = verify;
+    }
+
+    @TaskAction
+    public void generate() throws IOException {
+        File dir = getOutputDir();
+        Map<String, String> files;
+        try {
+            files = new GradleBuildGenerator(MavenSessionService.get(getProject()), dir).generate();
+        } catch (Exception e) {
+            throw new GradleException("failed to read Maven project", e);
+        }
+        if (isVerify()) {
+            verify(dir, files);
+        } else {
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                File target = new File(dir, file.getKey());
+                target.getParentFile().mkdirs();
+                Files.write(file.getValue(), target, Charsets.UTF_8);
+            }
+            getLogger().lifecycle("Wrote {} Gradle build files to {}", files.size(), dir);
+        }
+    }
+
+    private void verify(File dir, Map<String, String> files) throws IOException {
+        List<String> drifted = new ArrayList<String>();
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            File existing = new File(dir, file.getKey());
+            if (!existing.isFile()) {
+                getLogger().quiet("{} is missing", file.getKey());
+                drifted.add(file.getKey());
+            } else {
+                String difference = firstDifference(file.getValue(), Files.toString(existing, Charsets.UTF_8));
+                if (difference != null) {
+                    getLogger().quiet("{} differs from the POMs at {}", file.getKey(), difference);
+                    drifted.add(file.getKey());
+                }
+            }
+        }
+        if (!drifted.isEmpty()) {
+            throw new GradleException("The Gradle build in " + dir + " is out of date with the POMs, run " + TASK_NAME + " to update " + drifted);
+        }
+        getLogger().lifecycle("The Gradle build in {} is up to date with the POMs", dir);
+    }
+
+    /**
+     * @return a description of the first line differing between the texts, {@code null} if they are the same
+     */
+    private static String firstDifference(String expected, String actual) {
+        String[] expectedLines = expected.split("\r?\n", -1);
+        String[] actualLines = actual.split("\r?\n", -1);
+        for (int i = 0; i < Math.max(expectedLines.length, actualLines.length); i++) {
+            String expectedLine = i < expectedLines.length ? expectedLines[i] : "<end of file>";
+            String actualLine = i < actualLines.length ? actualLines[i] : "<end of file>";
+            if (!expectedLine.equals(actualLine)) {
+                return String.format("line %d, expected: %s, found: %s", i + 1, expectedLine, actualLine);
+            }
+        }
+        return null;
+    }
+}
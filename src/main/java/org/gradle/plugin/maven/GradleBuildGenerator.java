@@ -0,0 +1,315 @@
+package org.gradle.plugin.maven;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenExecutionRequestPopulationException;
+import org.apache.maven.project.ProjectBuildingException;
+import org.apache.maven.settings.building.SettingsBuildingException;
+import org.codehaus.plexus.PlexusContainerException;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.gradle.api.Project;
+import org.gradle.plugin.maven.ModuleMetadata.ModuleDependency;
+import org.gradle.plugin.maven.ModuleMetadata.ModuleExclusion;
+import org.gradle.plugin.maven.ModuleMetadata.ModuleRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static org.gradle.plugin.maven.ObjectConverter.scope2Configuration;
+
+/**
+ * Writes what {@link GradleM2MetadataPlugin} configures as static Gradle build scripts: a settings.gradle including
+ * all the reactor modules and a build.gradle per module, so the build can run without the plugin.
+ * The scripts only depend on the POMs, generating them twice gives the same text: the repositories are the ones the POMs declare,
+ * neither the mirrors of the settings nor {@link PluginOptions#getMirror()} are applied. When the scripts aren't written to the root
+ * project directory, settings.gradle points every project at its module directory, relative to the output directory.
+ */
+class GradleBuildGenerator {
+
+    static final String SETTINGS_FILE_NAME = "settings.gradle";
+    static final String BUILD_FILE_NAME = "build.gradle";
+    private static final String HEADER = "// Generated from the Maven POMs by the " + GenerateGradleBuildTask.TASK_NAME + " task, do not edit.\n";
+    private static final String TESTNG_GROUP = "org.testng";
+    private static final String TESTNG_NAME = "testng";
+    private static final String TEST_COMPILE_CONFIGURATION = "testCompile";
+    private static final String TEST_RUNTIME_CONFIGURATION = "testRuntime";
+
+    private final MavenSessionService sessionService;
+    private final File outputDir;
+    private final RepositoryRegistry repositoryRegistry = new RepositoryRegistry();
+
+    /**
+     * @param outputDir the directory the generated files are written to
+     */
+    GradleBuildGenerator(MavenSessionService sessionService, File outputDir) {
+        this.sessionService = sessionService;
+        this.outputDir = outputDir;
+    }
+
+    /**
+     * @return the content of the generated files by their path relative to the output directory, settings.gradle first
+     */
+    public Map<String, String> generate() throws PlexusContainerException, ComponentLookupException, MavenExecutionRequestPopulationException, ProjectBuildingException, IOException, SettingsBuildingException {
+        Project rootProject = sessionService.getRootProject();
+        ReactorIndex reactorIndex = sessionService.getReactorIndex();
+        SortedMap<String, Project> projects = new TreeMap<String, Project>();
+        Map<Project, ModuleMetadata> modules = new HashMap<Project, ModuleMetadata>();
+        Map<Project, String> directories = new HashMap<Project, String>();
+        for (ModuleMetadata module : sessionService.getReactorModules()) {
+            Project project = reactorIndex.findProject(module.getGroupId(), module.getArtifactId(), module.getVersion());
+            String directory = project == null ? null : relativeDirectory(rootProject, project);
+            if (directory == null) {
+                rootProject.getLogger().warn("Not generating a build script for {}, it isn't a project under {}", module.getBasedir(), rootProject.getProjectDir());
+            } else {
+                projects.put(project.getPath(), project);
+                modules.put(project, module);
+                directories.put(project, directory);
+            }
+        }
+        Map<String, String> files = new LinkedHashMap<String, String>();
+        files.put(SETTINGS_FILE_NAME, settingsScript(rootProject, projects.values(), directories));
+        for (Project project : projects.values()) {
+            files.put(buildFilePath(directories.get(project)), buildScript(modules.get(project), reactorIndex));
+        }
+        return files;
+    }
+
+    private String settingsScript(Project rootProject, Collection<Project> projects, Map<Project, String> directories) throws IOException {
+        StringBuilder script = new StringBuilder(HEADER).append('\n');
+        script.append("rootProject.name = ").append(quote(rootProject.getName())).append('\n');
+        for (Project project : projects) {
+            if (project != rootProject) {
+                script.append("include ").append(quote(project.getPath().substring(1))).append('\n');
+            }
+        }
+        String rootDirectory = relativePath(outputDir, rootProject.getProjectDir());
+        if (rootDirectory.equals(".")) {
+            for (Project project : projects) {
+                String directory = directories.get(project);
+                if (project != rootProject && !directory.equals(project.getPath().substring(1).replace(':', '/'))) {
+                    script.append("project(").append(quote(project.getPath())).append(").projectDir = new File(settingsDir, ")
+                            .append(quote(directory)).append(")\n");
+                }
+            }
+        } else { // the build files are next to settings.gradle, the sources in the module directories
+            script.append("\ndef mavenRootDir = new File(settingsDir, ").append(quote(rootDirectory)).append(")\n");
+            for (Project project : projects) {
+                String directory = directories.get(project);
+                String descriptor = project == rootProject ? "rootProject" : "project(" + quote(project.getPath()) + ")";
+                script.append(descriptor).append(".projectDir = ")
+                        .append(directory.length() == 0 ? "mavenRootDir" : "new File(mavenRootDir, " + quote(directory) + ")").append('\n');
+                File moduleDir = new File(rootProject.getProjectDir(), directory);
+                script.append(descriptor).append(".buildFileName = ")
+                        .append(quote(relativePath(moduleDir, new File(outputDir, buildFilePath(directory))))).append('\n');
+            }
+        }
+        return script.toString();
+    }
+
+    private static String buildFilePath(String directory) {
+        return directory.length() == 0 ? BUILD_FILE_NAME : directory + '/' + BUILD_FILE_NAME;
+    }
+
+    private String buildScript(ModuleMetadata module, ReactorIndex reactorIndex) {
+        StringBuilder script = new StringBuilder(HEADER).append('\n');
+        String pluginName = ObjectConverter.packaging2Plugin(module.getPackaging());
+        if (pluginName != null) {
+            script.append("apply plugin: ").append(quote(pluginName)).append("\n\n");
+        }
+
+        StringBuilder dependencies = new StringBuilder();
+        Set<String> evaluatedFirst = new TreeSet<String>();
+        boolean testNG = addDependencies(module, reactorIndex, dependencies, evaluatedFirst);
+        for (String projectPath : evaluatedFirst) {
+            script.append("evaluationDependsOn(").append(quote(projectPath)).append(")\n");
+        }
+        if (!evaluatedFirst.isEmpty()) {
+            script.append('\n');
+        }
+
+        script.append("group = ").append(quote(module.getGroupId())).append('\n');
+        script.append("version = ").append(quote(module.getVersion())).append('\n');
+        script.append("status = ").append(quote(module.isSnapshot() ? Artifact.SNAPSHOT_VERSION : Project.DEFAULT_STATUS)).append('\n');
+        if (pluginName != null) {
+            if (module.getSourceLevel() != null) {
+                script.append("sourceCompatibility = ").append(quote(module.getSourceLevel())).append('\n');
+            }
+            if (module.getTargetLevel() != null) {
+                script.append("targetCompatibility = ").append(quote(module.getTargetLevel())).append('\n');
+            }
+        }
+
+        List<ModuleRepository> repositories = repositoryRegistry.register(module.getRepositories());
+        if (!repositories.isEmpty()) {
+            script.append("\nrepositories {\n");
+            for (ModuleRepository repository : repositories) {
+                script.append("    mavenRepo name: ").append(quote(repository.getId())).append(", urls: ").append(quote(repository.getUrl())).append('\n');
+            }
+            script.append("}\n");
+        }
+        if (dependencies.length() > 0) {
+            script.append("\ndependencies {\n").append(dependencies).append("}\n");
+        }
+        if (pluginName != null) {
+            if (module.isSourcePluginPresent()) {
+                script.append("\ntask sourcesJar(type: Jar, dependsOn: compileJava) {\n")
+                        .append("    description = 'Generates a jar archive with all the source classes.'\n")
+                        .append("    classifier = 'sources'\n")
+                        .append("    from sourceSets.main.allSource\n")
+                        .append("}\n\nartifacts {\n    archives sourcesJar\n}\n");
+            }
+            appendTestTask(script, new TestTaskMapping(module.getTestSettings()), testNG);
+        }
+        return script.toString();
+    }
+
+    /**
+     * Appends the dependencies of the module grouped by scope, as {@link GradleM2MetadataPlugin} adds them.
+     *
+     * @return whether TestNG is a test dependency
+     */
+    private static boolean addDependencies(ModuleMetadata module, ReactorIndex reactorIndex, StringBuilder dependencies, Set<String> evaluatedFirst) {
+        Map<String, List<ModuleDependency>> dependenciesByScope = new LinkedHashMap<String, List<ModuleDependency>>();
+        for (ModuleDependency dependency : module.getDependencies()) {
+            List<ModuleDependency> scopeDependencies = dependenciesByScope.get(dependency.getScope());
+            if (scopeDependencies == null) {
+                scopeDependencies = new ArrayList<ModuleDependency>();
+                dependenciesByScope.put(dependency.getScope(), scopeDependencies);
+            }
+            scopeDependencies.add(dependency);
+        }
+        boolean testNG = false;
+        for (Map.Entry<String, List<ModuleDependency>> scopeDependencies : dependenciesByScope.entrySet()) {
+            String configurationName = scope2Configuration(scopeDependencies.getKey(), module.getPackaging());
+            if (configurationName == null) {
+                dependencies.append("    // no configuration matches scope ").append(scopeDependencies.getKey())
+                        .append(" for packaging ").append(module.getPackaging()).append('\n');
+                continue;
+            }
+            boolean testConfiguration = configurationName.equals(TEST_COMPILE_CONFIGURATION) || configurationName.equals(TEST_RUNTIME_CONFIGURATION);
+            for (ModuleDependency dependency : scopeDependencies.getValue()) {
+                Project project = reactorIndex.findProject(dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion());
+                if (project == null) {
+                    String notation = dependency.getGroupId() + ':' + dependency.getArtifactId() + (dependency.getVersion() == null ? "" : ':' + dependency.getVersion());
+                    if (dependency.getExclusions().isEmpty()) {
+                        dependencies.append("    ").append(configurationName).append(' ').append(quote(notation)).append('\n');
+                    } else {
+                        dependencies.append("    ").append(configurationName).append('(').append(quote(notation)).append(") {\n");
+                        for (ModuleExclusion exclusion : dependency.getExclusions()) {
+                            dependencies.append("        exclude group: ").append(quote(exclusion.getGroupId()))
+                                    .append(", module: ").append(quote(exclusion.getArtifactId())).append('\n');
+                        }
+                        dependencies.append("    }\n");
+                    }
+                    testNG |= testConfiguration && dependency.getGroupId().equals(TESTNG_GROUP) && dependency.getArtifactId().equals(TESTNG_NAME);
+                } else if (testConfiguration) { // tests aren't packaged, so we need to depend on compiled classes
+                    ModuleMetadata dependencyModule = reactorIndex.findModule(dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion());
+                    if (dependencyModule == null || ObjectConverter.packaging2Plugin(dependencyModule.getPackaging()) == null) {
+                        dependencies.append("    // can't depend on test classes of ").append(project.getPath()).append(", it has no Java plugin\n");
+                    } else {
+                        evaluatedFirst.add(project.getPath());
+                        dependencies.append("    ").append(configurationName).append(" project(").append(quote(project.getPath())).append(").sourceSets.test.output\n");
+                    }
+                } else {
+                    dependencies.append("    ").append(configurationName).append(" project(").append(quote(project.getPath())).append(")\n");
+                }
+            }
+        }
+        return testNG;
+    }
+
+    private static void appendTestTask(StringBuilder script, TestTaskMapping mapping, boolean testNG) {
+        StringBuilder test = new StringBuilder();
+        for (String warning : mapping.getWarnings()) {
+            test.append("    // ").append(warning).append('\n');
+        }
+        if (testNG) {
+            test.append("    useTestNG()\n");
+        }
+        if (mapping.getMaxParallelForksExpression() != null) {
+            test.append("    maxParallelForks = ").append(mapping.getMaxParallelForksExpression()).append('\n');
+        }
+        if (mapping.isForkPerTest()) {
+            test.append("    forkEvery = 1\n");
+        }
+        if (mapping.getMaxHeapSize() != null) {
+            test.append("    maxHeapSize = ").append(quote(mapping.getMaxHeapSize())).append('\n');
+        }
+        if (mapping.getMinHeapSize() != null) {
+            test.append("    minHeapSize = ").append(quote(mapping.getMinHeapSize())).append('\n');
+        }
+        if (!mapping.getJvmArgs().isEmpty()) {
+            test.append("    jvmArgs ").append(quoteAll(mapping.getJvmArgs())).append('\n');
+        }
+        for (String include : mapping.getIncludes()) {
+            test.append("    include ").append(quote(include)).append('\n');
+        }
+        for (String exclude : mapping.getExcludes()) {
+            test.append("    exclude ").append(quote(exclude)).append('\n');
+        }
+        for (Map.Entry<String, String> property : mapping.getSystemProperties().entrySet()) {
+            test.append("    systemProperty ").append(quote(property.getKey())).append(", ").append(quote(property.getValue())).append('\n');
+        }
+        if (test.length() > 0) {
+            script.append("\ntest {\n").append(test).append("}\n");
+        }
+    }
+
+    /**
+     * @return the directory of the project relative to the root project directory with / separators,
+     * {@code null} if it's not under the root project directory
+     */
+    private static String relativeDirectory(Project rootProject, Project project) throws IOException {
+        String rootPath = rootProject.getProjectDir().getCanonicalPath();
+        String path = project.getProjectDir().getCanonicalPath();
+        if (path.equals(rootPath)) {
+            return "";
+        }
+        if (!path.startsWith(rootPath + File.separator)) {
+            return null;
+        }
+        return path.substring(rootPath.length() + 1).replace(File.separatorChar, '/');
+    }
+
+    /**
+     * @return the path of the file relative to the directory with / separators, its absolute path if they don't share a file system root
+     */
+    private static String relativePath(File dir, File file) throws IOException {
+        String[] dirNames = dir.getCanonicalPath().split(Pattern.quote(File.separator));
+        String[] fileNames = file.getCanonicalPath().split(Pattern.quote(File.separator));
+        int common = 0;
+        while (common < dirNames.length && common < fileNames.length && dirNames[common].equals(fileNames[common])) {
+            common++;
+        }
+        if (common == 0) {
+            return file.getCanonicalPath().replace(File.separatorChar, '/');
+        }
+        StringBuilder path = new StringBuilder();
+        for (int i = common; i < dirNames.length; i++) {
+            path.append("../");
+        }
+        for (int i = common; i < fileNames.length; i++) {
+            path.append(fileNames[i]).append('/');
+        }
+        return path.length() == 0 ? "." : path.substring(0, path.length() - 1);
+    }
+
+    private static String quoteAll(List<String> values) {
+        StringBuilder quoted = new StringBuilder();
+        for (String value : values) {
+            if (quoted.length() > 0) {
+                quoted.append(", ");
+            }
+            quoted.append(quote(value));
+        }
+        return quoted.toString();
+    }
+
+    /**
+     * @return the value as a single quoted Groovy string
+     */
+    private static String quote(String value) {
+        return '\'' + value.replace("\\", "\\\\").replace("'", "\\'") + '\'';
+    }
+}
@@ -2,31 +2,17 @@ package org.gradle.plugin.maven;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
 import org.apache.ivy.core.module.descriptor.ModuleDescriptor;
+import org.apache.ivy.plugins.resolver.DependencyResolver;
+import org.apache.ivy.plugins.resolver.DualResolver;
+import org.apache.ivy.plugins.resolver.IBiblioResolver;
 import org.apache.maven.artifact.Artifact;
-import org.apache.maven.execution.*;
-import org.apache.maven.model.Dependency;
-import org.apache.maven.model.Exclusion;
-import org.apache.maven.model.Repository;
-import org.apache.maven.model.building.ModelBuildingRequest;
-import org.apache.maven.project.*;
-import org.apache.maven.project.artifact.ProjectArtifact;
-import org.apache.maven.settings.Settings;
-import org.apache.maven.settings.building.DefaultSettingsBuildingRequest;
-import org.apache.maven.settings.building.SettingsBuilder;
+import org.apache.maven.execution.MavenExecutionRequestPopulationException;
+import org.apache.maven.project.ProjectBuildingException;
 import org.apache.maven.settings.building.SettingsBuildingException;
-import org.apache.maven.settings.building.SettingsBuildingRequest;
-import org.codehaus.plexus.ContainerConfiguration;
-import org.codehaus.plexus.DefaultContainerConfiguration;
-import org.codehaus.plexus.DefaultPlexusContainer;
 import org.codehaus.plexus.PlexusContainerException;
-import org.codehaus.plexus.classworlds.ClassWorld;
 import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
-import org.codehaus.plexus.util.cli.CommandLineUtils;
-import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.gradle.api.GradleException;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
@@ -46,10 +32,13 @@ import org.gradle.api.plugins.JavaPluginConvention;
 import org.gradle.api.tasks.SourceSet;
 import org.gradle.api.tasks.bundling.Jar;
 import org.gradle.api.tasks.testing.Test;
+import org.gradle.plugin.maven.ModuleMetadata.ModuleDependency;
+import org.gradle.plugin.maven.ModuleMetadata.ModuleExclusion;
+import org.gradle.plugin.maven.ModuleMetadata.ModuleRepository;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 import static com.google.common.collect.ImmutableMap.of;
 import static com.google.common.collect.Iterables.*;
@@ -60,54 +49,107 @@ import static org.gradle.plugin.maven.ObjectConverter.scope2Configuration;
 
 public class GradleM2MetadataPlugin implements Plugin<Project> {
 
-    private static final String MAVEN_COMPILER_PLUGIN_KEY = "org.apache.maven.plugins:maven-compiler-plugin";
-    private static final String MAVEN_SOURCE_PLUGIN_KEY = "org.apache.maven.plugins:maven-source-plugin";
     private static final String SOURCES_CLASSIFIER = "sources";
     private static final String SOURCES_JAR_TASK_NAME = "sourcesJar";
-    private static final String SOURCE_LEVEL_COMPILE_PLUGIN_SETTING = "source";
-    private static final String TARGET_LEVEL_COMPILE_PLUGIN_SETTING = "target";
     private static final String JAVA_PLUGIN_CONVENTION_NAME = "java";
-    private static final String DEPENDENCIES_KEY = "lateBindDeps";
     private static final String TESTNG_GROUP = "org.testng";
     private static final String TESTNG_NAME = "testng";
     private static final String TEST_RUNTIME_CONFIGURATION = "testRuntime";
-    private File defaultUserSettingsFile;
-    private File defaultGlobalSettingsFile;
+    private static final String TEST_TASK_NAME = "test";
 
-    private MavenProject mavenProject;
+    private ModuleMetadata module;
     private Project project;
-    private Settings mavenSettings;
-    private DefaultPlexusContainer container;
-    private Iterable<MavenProject> reactorProjects;
+    private MavenSessionService sessionService;
+    private ReactorIndex reactorIndex;
     private static final String TEST_COMPILE_CONFIGURATION = "testCompile";
 
     public void apply(Project project) {
         this.project = project;
-        defaultUserSettingsFile = new File(new File(System.getProperty("user.home"), ".m2"), "settings.xml");
-        defaultGlobalSettingsFile = new File(System.getProperty("maven.home", System.getProperty("user.dir", "")), "conf/settings.xml");
-        
+
         try {
             project.getLogger().lifecycle("Reading maven project for {}...", project.getName());
-            buildContainer();
-            readSettings();
-            readMavenProject();
+            sessionService = MavenSessionService.get(project);
+            ConfigurationProfiler profiler = sessionService.getProfiler();
+            String modulePath = project.getPath();
+            ConfigurationProfiler.Timer timer = profiler.start(modulePath, "readMavenProject");
+            try {
+                readMavenProject();
+            } finally {
+                timer.stop();
+            }
             project.getLogger().lifecycle("Configuring general settings...");
-            configureSettings();
+            timer = profiler.start(modulePath, "configureSettings");
+            try {
+                configureSettings();
+            } finally {
+                timer.stop();
+            }
             project.getLogger().lifecycle("Applying Gradle plugins according to packaging type...");
-            applyGradlePlugins();
+            timer = profiler.start(modulePath, "applyGradlePlugins");
+            try {
+                applyGradlePlugins();
+            } finally {
+                timer.stop();
+            }
             project.getLogger().lifecycle("Retrieving metadata from known Maven plugins...");
-            retrieveMavenPluginsMetadata();
+            timer = profiler.start(modulePath, "retrieveMavenPluginsMetadata");
+            try {
+                retrieveMavenPluginsMetadata();
+            } finally {
+                timer.stop();
+            }
             project.getLogger().lifecycle("Applying Maven repositories...");
-            addRepositories();
-            project.getLogger().lifecycle("Adding project dependencies...");
-            addDependencies();
-            project.getLogger().lifecycle("Configuring correct test runner...");
-            configureTests();
+            timer = profiler.start(modulePath, "addRepositories");
+            try {
+                addRepositories();
+            } finally {
+                timer.stop();
+            }
+            if (sessionService.getOptions().isLazyConfiguration()) {
+                project.getLogger().lifecycle("Deferring project dependencies until they are needed...");
+                deferDependencies();
+            } else {
+                project.getLogger().lifecycle("Adding project dependencies...");
+                configureDependencies();
+            }
         } catch (Exception e) {
             throw new GradleException("failed to read Maven project", e);
         }
     }
 
+    /**
+     * In lazy mode dependencies are added when the project is needed, see {@link DeferredConfiguration}.
+     */
+    private void deferDependencies() {
+        sessionService.getDeferredConfiguration().defer(project, new Runnable() {
+            public void run() {
+                project.getLogger().info("Adding project dependencies of {}...", project.getPath());
+                try {
+                    configureDependencies();
+                } catch (Exception e) {
+                    throw new GradleException("failed to read Maven project", e);
+                }
+            }
+        });
+    }
+
+    private void configureDependencies() throws PlexusContainerException, ComponentLookupException, MavenExecutionRequestPopulationException, ProjectBuildingException, IOException, SettingsBuildingException {
+        ConfigurationProfiler profiler = sessionService.getProfiler();
+        reactorIndex = sessionService.getReactorIndex();
+        ConfigurationProfiler.Timer timer = profiler.start(project.getPath(), "addDependencies");
+        try {
+            addDependencies();
+        } finally {
+            timer.stop();
+        }
+        timer = profiler.start(project.getPath(), "configureTests");
+        try {
+            configureTests();
+        } finally {
+            timer.stop();
+        }
+    }
+
     private void configureTests() {
         ConfigurationContainer configurations = project.getConfigurations();
         Configuration testRuntime = configurations.findByName(TEST_RUNTIME_CONFIGURATION);
@@ -124,7 +166,7 @@ public class GradleM2MetadataPlugin implements Plugin<Project> {
                 return input instanceof DefaultExternalModuleDependency && input.getGroup().equals(TESTNG_GROUP) && input.getName().equals(TESTNG_NAME);
             }
         })) {
-            Set<Task> tests = project.getTasksByName("test", false);
+            Set<Task> tests = project.getTasksByName(TEST_TASK_NAME, false);
             for (Task test : tests) {
                 ((Test) test).useTestNG();
             }
@@ -136,13 +178,26 @@ public class GradleM2MetadataPlugin implements Plugin<Project> {
         if (javaConvention != null) {
             configureCompiler(javaConvention);
             configureSources(javaConvention);
+            configureTestTasks();
         }
         //TODO add artifactId and repo to maven-plugin's uploadArchives
     }
 
+    /**
+     * Configures the test tasks after the maven-surefire-plugin, see {@link TestTaskMapping}.
+     */
+    private void configureTestTasks() {
+        TestTaskMapping mapping = new TestTaskMapping(module.getTestSettings());
+        for (String warning : mapping.getWarnings()) {
+            project.getLogger().warn("{} of {}", warning, project.getPath());
+        }
+        for (Task task : project.getTasksByName(TEST_TASK_NAME, false)) {
+            mapping.applyTo((Test) task);
+        }
+    }
+
     private void configureSources(JavaPluginConvention javaConvention) {
-        org.apache.maven.model.Plugin mavenSourcePlugin = mavenProject.getPlugin(MAVEN_SOURCE_PLUGIN_KEY);
-        if (mavenSourcePlugin != null) {
+        if (module.isSourcePluginPresent()) {
             Jar sourcesJar = project.getTasks().add(SOURCES_JAR_TASK_NAME, Jar.class);
             sourcesJar.setDescription("Generates a  jar archive with all the source classes.");
             sourcesJar.dependsOn(project.getTasksByName(JavaPlugin.COMPILE_JAVA_TASK_NAME, false));
@@ -153,190 +208,128 @@ public class GradleM2MetadataPlugin implements Plugin<Project> {
     }
 
     private void configureCompiler(JavaPluginConvention javaConvention) {
-        org.apache.maven.model.Plugin mavenCompilerPlugin = mavenProject.getPlugin(MAVEN_COMPILER_PLUGIN_KEY);
-        Xpp3Dom configuration = (Xpp3Dom) mavenCompilerPlugin.getConfiguration();
-        if (configuration != null) { //where is my null safe elvis :(
-            Xpp3Dom source = configuration.getChild(SOURCE_LEVEL_COMPILE_PLUGIN_SETTING);
-            if (source != null) {
-                javaConvention.setSourceCompatibility(source.getValue());
-
-            }
-            Xpp3Dom target = configuration.getChild(TARGET_LEVEL_COMPILE_PLUGIN_SETTING);
-            if (target != null) {
-                javaConvention.setTargetCompatibility(target.getValue());
-            }
+        if (module.getSourceLevel() != null) {
+            javaConvention.setSourceCompatibility(module.getSourceLevel());
+        }
+        if (module.getTargetLevel() != null) {
+            javaConvention.setTargetCompatibility(module.getTargetLevel());
         }
     }
 
     private void configureSettings() {
         AbstractProject abstractProject = (AbstractProject) project;
-        abstractProject.setVersion(mavenProject.getVersion());
-        abstractProject.setGroup(mavenProject.getGroupId());
-        Artifact projectArtifact = new ProjectArtifact(mavenProject);
-        abstractProject.setStatus(projectArtifact.isSnapshot() ? Artifact.SNAPSHOT_VERSION : Project.DEFAULT_STATUS);
+        abstractProject.setVersion(module.getVersion());
+        abstractProject.setGroup(module.getGroupId());
+        abstractProject.setStatus(module.isSnapshot() ? Artifact.SNAPSHOT_VERSION : Project.DEFAULT_STATUS);
     }
 
-    private void readSettings() throws IOException, ComponentLookupException, SettingsBuildingException {
-        Properties props = new Properties();
-        props.putAll(System.getProperties());
-        Properties envVars = CommandLineUtils.getSystemEnvVars();
-        for (Map.Entry<Object, Object> objectObjectEntry : envVars.entrySet()) {
-            props.setProperty("env." + objectObjectEntry.getKey().toString(), objectObjectEntry.getValue().toString());
+    /**
+     * Adds the Maven repositories whose URL the project doesn't declare yet.
+     * A repository whose name is taken by another URL is added with a numeric suffix.
+     */
+    private void addRepositories() throws PlexusContainerException, ComponentLookupException, IOException, SettingsBuildingException {
+        List<ModuleRepository> mavenRepositories = sessionService.getRepositories(module);
+        RepositoryHandler repositoryHandler = project.getRepositories();
+        Set<String> declaredUrls = new HashSet<String>();
+        for (DependencyResolver resolver : repositoryHandler.getResolvers()) {
+            String url = rootUrl(resolver);
+            if (url != null) {
+                declaredUrls.add(RepositoryRegistry.normalizeUrl(url));
+            }
+        }
+        for (ModuleRepository mavenRepository : mavenRepositories) {
+            if (declaredUrls.add(RepositoryRegistry.normalizeUrl(mavenRepository.getUrl()))) {
+                String name = mavenRepository.getId();
+                for (int i = 2; repositoryHandler.findByName(name) != null; i++) {
+                    name = mavenRepository.getId() + '-' + i;
+                }
+                if (!name.equals(mavenRepository.getId())) {
+                    project.getLogger().warn("Repository {} of {} is already declared with another URL, adding {} as {}",
+                            mavenRepository.getId(), project.getPath(), mavenRepository.getUrl(), name);
+                }
+                repositoryHandler.mavenRepo(of("name", name, "urls", mavenRepository.getUrl()));
+                sessionService.getProfiler().increment(ConfigurationProfiler.Counter.REPOSITORIES_ADDED);
+            }
         }
-        SettingsBuildingRequest request = new DefaultSettingsBuildingRequest();
-        request.setGlobalSettingsFile(defaultGlobalSettingsFile);
-        request.setUserSettingsFile(defaultUserSettingsFile);
-        request.setSystemProperties(props);
-        this.mavenSettings = container.lookup(SettingsBuilder.class).build(request).getEffectiveSettings();
     }
 
-    private void addRepositories() {
-        List<Repository> mavenRepositories = mavenProject.getRepositories();
-        RepositoryHandler repositoryHandler = project.getRepositories();
-        for (Repository mavenRepository : mavenRepositories) {
-            repositoryHandler.mavenRepo(of("name", mavenRepository.getId(), "urls", mavenRepository.getUrl()));
+    /**
+     * @return the root URL of a Maven repository resolver, {@code null} for other resolvers
+     */
+    private static String rootUrl(DependencyResolver resolver) {
+        if (resolver instanceof DualResolver) { //Maven repositories with separate artifact URLs
+            resolver = ((DualResolver) resolver).getIvyResolver();
         }
+        return resolver instanceof IBiblioResolver ? ((IBiblioResolver) resolver).getRoot() : null;
     }
 
     private void applyGradlePlugins() {
         //TODO project.apply(of("plugin", "maven")); - can't do it because Maven2 dependencies in gradle class loader
-        String pluginName = ObjectConverter.packaging2Plugin(mavenProject.getPackaging());
+        String pluginName = ObjectConverter.packaging2Plugin(module.getPackaging());
         if (pluginName != null) {
             project.apply(of("plugin", pluginName));
         }
-        //only now we can add dependencies on this project classes
-        addReverseDependenciesOnClasses();
     }
 
-    @SuppressWarnings({"unchecked"})
-    private void addReverseDependenciesOnClasses() {
-        JavaPluginConvention convention = (JavaPluginConvention) project.getConvention().getPlugins().get(JAVA_PLUGIN_CONVENTION_NAME);
-        if (convention != null) {
-            List<DepDef> moduleDeps = (List<DepDef>) project.getProperties().get(DEPENDENCIES_KEY);
-            if (moduleDeps != null) {
-                for (DepDef moduleDep : moduleDeps) {
-                    Configuration configuration = moduleDep.project.getConfigurations().getByName(moduleDep.configuration);
-                    FileCollection testClasses = convention.getSourceSets().getByName("test").getOutput();
-                    configuration.addDependency(new DefaultSelfResolvingDependency(testClasses));
-                }
-            }
-        }
-    }
-
-    @SuppressWarnings({"unchecked"})
     private void addDependencies() {
-        List<Dependency> dependencies = mavenProject.getDependencies();
-        Multimap<String, Dependency> dependenciesByScope = index(dependencies, new Function<Dependency, String>() {
-            public String apply(Dependency from) {
+        List<ModuleDependency> dependencies = module.getDependencies();
+        Multimap<String, ModuleDependency> dependenciesByScope = index(dependencies, new Function<ModuleDependency, String>() {
+            public String apply(ModuleDependency from) {
                 return from.getScope();
             }
         });
         ConfigurationContainer configurations = project.getConfigurations();
         for (String scope : dependenciesByScope.keySet()) {
-            String packaging = mavenProject.getPackaging();
+            String packaging = module.getPackaging();
             String configurationName = scope2Configuration(scope, packaging);
             if (configurationName == null) {
                 project.getLogger().warn("Can't find configuration matching scope {} for packaging {}", scope, packaging);
             } else {
                 org.gradle.api.artifacts.Configuration configuration = configurations.getByName(configurationName);
-                Collection<Dependency> scopeDependencies = dependenciesByScope.get(scope);
-                for (final Dependency mavenDependency : scopeDependencies) {
+                Collection<ModuleDependency> scopeDependencies = dependenciesByScope.get(scope);
+                for (ModuleDependency mavenDependency : scopeDependencies) {
                     AbstractDependency dependency;
-                    Iterable<MavenProject> projectModules = filter(reactorProjects, new Predicate<MavenProject>() {//find maven module for dependency
-
-                        public boolean apply(MavenProject input) {
-                            return (input.getGroupId().equals(mavenDependency.getGroupId()) &&
-                                    input.getArtifactId().equals(mavenDependency.getArtifactId()) &&
-                                    input.getVersion().equals(mavenDependency.getVersion()));
-                        }
-                    });
-
-                    if (Iterables.isEmpty(projectModules)) {//no module found, add external dependency
+                    Project projectDependency = reactorIndex.findProject(mavenDependency.getGroupId(), mavenDependency.getArtifactId(), mavenDependency.getVersion());
+                    if (projectDependency == null) {//no module found, add external dependency
                         dependency = new DefaultExternalModuleDependency(mavenDependency.getGroupId(), mavenDependency.getArtifactId(), mavenDependency.getVersion());
-                        List<Exclusion> exclusions = mavenDependency.getExclusions();
-                        for (Exclusion exclusion : exclusions) {
+                        List<ModuleExclusion> exclusions = mavenDependency.getExclusions();
+                        for (ModuleExclusion exclusion : exclusions) {
                             ((DefaultExternalModuleDependency) dependency).exclude(of("group", exclusion.getGroupId(), "module", exclusion.getArtifactId()));
                         }
+                        sessionService.getProfiler().increment(ConfigurationProfiler.Counter.EXTERNAL_DEPENDENCIES);
                     } else { //Project Dependency found
-                        final File mavenModule = Iterables.getOnlyElement(projectModules).getBasedir();
-                        // this is a concrete gradle project, it probably has parent in which the plugin is applied in subprojects closure
-                        Set<Project> allProjects = new HashSet<Project>();
-                        collectAllProjects(project, allProjects);
-                        Project projectDependency = find(allProjects, new Predicate<Project>() {
-                            public boolean apply(Project input) {//input:project ':policy-client/1.0'
-                                return mavenModule.equals(input.getBuildDir().getParentFile());//project dir
-                            }
-                        });
-                        if (configurationName.equals("testCompile") || configurationName.equals(TEST_RUNTIME_CONFIGURATION)) { // tests aren't packaged, so we need to depend on compiled classes
-                            Object javaPlugin = projectDependency.getConvention().getPlugins().get(JAVA_PLUGIN_CONVENTION_NAME);
-                            //if the project of the dependency wasn't parsed yet, java plugin is not applyed, so we can't get it. Save for later.
-                            if (javaPlugin == null) {
-                                List<DepDef> moduleDeps = (List<DepDef>) projectDependency.getProperties().get(DEPENDENCIES_KEY);
-                                if (moduleDeps == null) {
-                                    moduleDeps = new ArrayList<DepDef>();
-                                    projectDependency.setProperty(DEPENDENCIES_KEY, moduleDeps);
-                                }
-                                moduleDeps.add(new DepDef(project, configurationName));
-                                dependency = null;
-                            } else {
-                                FileCollection testClasses = ((JavaPluginConvention) javaPlugin).getSourceSets().getByName("test").getOutput();
-                                dependency = new DefaultSelfResolvingDependency(testClasses);
-                            }
+                        if (configurationName.equals(TEST_COMPILE_CONFIGURATION) || configurationName.equals(TEST_RUNTIME_CONFIGURATION)) { // tests aren't packaged, so we need to depend on compiled classes
+                            dependency = new DefaultSelfResolvingDependency(testClasses(projectDependency));
+                            sessionService.getProfiler().increment(ConfigurationProfiler.Counter.TEST_OUTPUT_DEPENDENCIES);
                         } else {
-                            configurationName = ModuleDescriptor.DEFAULT_CONFIGURATION;
-                            dependency = new DefaultProjectDependency(projectDependency, configurationName, project.getGradle().getStartParameter().getProjectDependenciesBuildInstruction());
+                            dependency = new DefaultProjectDependency(projectDependency, ModuleDescriptor.DEFAULT_CONFIGURATION, project.getGradle().getStartParameter().getProjectDependenciesBuildInstruction());
+                            sessionService.getProfiler().increment(ConfigurationProfiler.Counter.PROJECT_DEPENDENCIES);
                         }
                     }
-                    if (dependency != null) {
-                        configuration.addDependency(dependency);
-                    }
+                    configuration.addDependency(dependency);
                 }
             }
         }
     }
 
-    private void collectAllProjects(Project project, Set<Project> allProjects) {
-        allProjects.addAll(project.getAllprojects());
-        Project parent = project.getParent();
-        if (parent != null) {
-            collectAllProjects(parent, allProjects);
-        }
-    }
-
-    private void readMavenProject() throws ComponentLookupException, MavenExecutionRequestPopulationException, ProjectBuildingException {
-        ProjectBuilder builder = container.lookup(ProjectBuilder.class);
-        MavenExecutionRequest executionRequest = new DefaultMavenExecutionRequest();
-        MavenExecutionRequestPopulator populator = container.lookup(MavenExecutionRequestPopulator.class);
-        populator.populateFromSettings(executionRequest, mavenSettings);
-        populator.populateDefaults(executionRequest);
-        ProjectBuildingRequest buildingRequest = executionRequest.getProjectBuildingRequest();
-        buildingRequest.setValidationLevel(ModelBuildingRequest.VALIDATION_LEVEL_MINIMAL);
-        mavenProject = builder.build(new File(project.getProjectDir(), "pom.xml"), buildingRequest).getProject();
-        reactorProjects = transform(builder.build(ImmutableList.of(new File("pom.xml")), true, buildingRequest), new Function<ProjectBuildingResult, MavenProject>() {
-            public MavenProject apply(ProjectBuildingResult from) {
-                return from.getProject();
+    /**
+     * @return the test classes of the given project, looked up when the collection is resolved,
+     * so the project may not be evaluated yet
+     */
+    private FileCollection testClasses(final Project dependencyProject) {
+        return project.files(new Callable<Object>() {
+            public Object call() {
+                JavaPluginConvention javaConvention = (JavaPluginConvention) dependencyProject.getConvention().getPlugins().get(JAVA_PLUGIN_CONVENTION_NAME);
+                if (javaConvention == null) {
+                    project.getLogger().warn("Can't depend on test classes of {}, it has no Java plugin", dependencyProject.getPath());
+                    return Collections.emptyList();
+                }
+                return javaConvention.getSourceSets().getByName(SourceSet.TEST_SOURCE_SET_NAME).getOutput();
             }
         });
-        MavenExecutionResult result = new DefaultMavenExecutionResult();
-        result.setProject(mavenProject);
-        MavenSession session = new MavenSession(container, executionRequest, result);
-        session.setCurrentProject(mavenProject);
-    }
-
-    private void buildContainer() throws PlexusContainerException {
-        ContainerConfiguration containerConfiguration = new DefaultContainerConfiguration()
-                .setClassWorld(new ClassWorld("plexus.core", this.getClass().getClassLoader()))
-                .setName("mavenCore");
-        container = new DefaultPlexusContainer(containerConfiguration);
     }
 
-    private static class DepDef {
-        public final Project project;
-        public final String configuration;
-
-        public DepDef(Project project, String configuration) {
-            this.configuration = configuration;
-            this.project = project;
-        }
+    private void readMavenProject() throws PlexusContainerException, ComponentLookupException, MavenExecutionRequestPopulationException, ProjectBuildingException, IOException, SettingsBuildingException {
+        module = sessionService.getModule(project);
     }
 }
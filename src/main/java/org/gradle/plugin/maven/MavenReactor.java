@@ -0,0 +1,337 @@
+package org.gradle.plugin.maven;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.maven.artifact.repository.RepositoryCache;
+import org.apache.maven.artifact.repository.RepositoryRequest;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Profile;
+import org.apache.maven.project.DefaultProjectBuildingRequest;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectBuilder;
+import org.apache.maven.project.ProjectBuildingException;
+import org.apache.maven.project.ProjectBuildingRequest;
+import org.apache.maven.project.ProjectBuildingResult;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Maven reactor read once per build from the root pom.xml, indexed by module base directory.
+ * Lookups by coordinates go through {@link ReactorIndex}.
+ */
+class MavenReactor {
+
+    private static final Logger LOGGER = Logging.getLogger(MavenReactor.class);
+
+    private final List<MavenProject> projects;
+    private final Map<File, MavenProject> projectsByBasedir;
+
+    private MavenReactor(List<MavenProject> projects) throws IOException {
+        this.projects = Collections.unmodifiableList(projects);
+        projectsByBasedir = new HashMap<File, MavenProject>(projects.size() * 2);
+        for (MavenProject mavenProject : projects) {
+            projectsByBasedir.put(mavenProject.getBasedir().getCanonicalFile(), mavenProject);
+        }
+    }
+
+    public static MavenReactor read(ProjectBuilder builder, File rootPom, ProjectBuildingRequest buildingRequest) throws ProjectBuildingException, IOException {
+        List<ProjectBuildingResult> results = builder.build(ImmutableList.of(rootPom), true, buildingRequest);
+        List<MavenProject> projects = new ArrayList<MavenProject>(results.size());
+        for (ProjectBuildingResult result : results) {
+            projects.add(result.getProject());
+        }
+        return new MavenReactor(projects);
+    }
+
+    /**
+     * Builds the reactor modules in parallel on at most {@code threads} threads, one model per module.
+     * Modules are collected from the raw {@code <modules>} of the root pom.xml, and the results are merged back
+     * in that order whatever order the builds finish in.
+     * The builds share one repository cache, so remote parents and artifacts are resolved once.
+     * A module built on its own only sees the reactor modules it reaches by {@code relativePath}, the others
+     * would be resolved from the local repository. The modules having such a reactor parent, or importing
+     * the dependency management of a reactor module, are built together with the reactor modules they need instead.
+     * Falls back to the sequential reactor build when the module list can't be known without Maven
+     * (modules declared in profiles) or when any module fails to build, the failure is logged at info level.
+     */
+    public static MavenReactor readParallel(ProjectBuilder builder, File rootPom, ProjectBuildingRequest buildingRequest, int threads) throws ProjectBuildingException, IOException {
+        Map<File, Model> models = collectModuleModels(rootPom.getCanonicalFile());
+        if (models == null || models.size() < 2 || threads < 2) {
+            return read(builder, rootPom, buildingRequest);
+        }
+        if (buildingRequest.getRepositoryCache() == null) {
+            buildingRequest.setRepositoryCache(new SharedRepositoryCache());
+        }
+        List<File> modulePoms = new ArrayList<File>(models.keySet());
+        Map<String, File> reactorPoms = new HashMap<String, File>();
+        for (Map.Entry<File, Model> entry : models.entrySet()) {
+            reactorPoms.put(groupId(entry.getValue()) + ':' + entry.getValue().getArtifactId(), entry.getKey());
+        }
+        Map<File, Set<File>> reactorDependencies = reactorDependencies(models, reactorPoms);
+        List<File> independentPoms = new ArrayList<File>();
+        List<Callable<List<MavenProject>>> builds = new ArrayList<Callable<List<MavenProject>>>(modulePoms.size());
+        for (File modulePom : modulePoms) {
+            if (reactorDependencies.get(modulePom).isEmpty()) {
+                independentPoms.add(modulePom);
+                builds.add(new ModuleBuild(builder, Collections.singletonList(modulePom), copyOf(buildingRequest)));
+            }
+        }
+        List<File> dependentPoms = new ArrayList<File>(modulePoms);
+        dependentPoms.removeAll(independentPoms);
+        if (!dependentPoms.isEmpty()) {
+            LOGGER.info("Building {} together with the reactor modules they inherit from or import", dependentPoms);
+            builds.add(new ModuleBuild(builder, withReactorDependencies(dependentPoms, modulePoms, reactorDependencies, models, reactorPoms), copyOf(buildingRequest)));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, builds.size()), new ModelBuilderThreadFactory());
+        try {
+            List<Future<List<MavenProject>>> futures = executor.invokeAll(builds);
+            Map<File, MavenProject> projectsByPom = new HashMap<File, MavenProject>(modulePoms.size() * 2);
+            for (Future<List<MavenProject>> future : futures) {
+                try {
+                    for (MavenProject project : future.get()) {
+                        projectsByPom.put(project.getFile().getCanonicalFile(), project);
+                    }
+                } catch (ExecutionException e) {
+                    LOGGER.info("Building the reactor modules in parallel failed, reading the reactor sequentially: {}", e.getCause());
+                    return read(builder, rootPom, buildingRequest);
+                }
+            }
+            List<MavenProject> projects = new ArrayList<MavenProject>(modulePoms.size());
+            for (File modulePom : modulePoms) {
+                projects.add(projectsByPom.get(modulePom));
+            }
+            return new MavenReactor(projects);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while building the Maven reactor");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the raw models of the reactor POMs in declaration order, depth first, or {@code null} if profiles declare modules
+     */
+    private static Map<File, Model> collectModuleModels(File rootPom) throws IOException {
+        Map<File, Model> models = new LinkedHashMap<File, Model>();
+        return collectModuleModels(rootPom, models) ? models : null;
+    }
+
+    private static boolean collectModuleModels(File pom, Map<File, Model> models) throws IOException {
+        if (models.containsKey(pom)) {
+            return true;
+        }
+        Model model = PomFiles.readRawModel(pom);
+        models.put(pom, model);
+        for (Profile profile : model.getProfiles()) {
+            if (!profile.getModules().isEmpty()) {
+                return false;
+            }
+        }
+        for (String module : model.getModules()) {
+            if (!collectModuleModels(PomFiles.modulePom(pom, module), models)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return for each reactor POM, the reactor POMs a build of it on its own wouldn't see: a parent not reached
+     * by {@code relativePath}, or an imported BOM, in its parent chain on disk
+     */
+    private static Map<File, Set<File>> reactorDependencies(Map<File, Model> models, Map<String, File> reactorPoms) throws IOException {
+        Map<File, Set<File>> dependencies = new HashMap<File, Set<File>>();
+        for (Map.Entry<File, Model> entry : models.entrySet()) {
+            Set<File> needed = new LinkedHashSet<File>();
+            Set<File> chain = new HashSet<File>();
+            File pom = entry.getKey();
+            Model model = entry.getValue();
+            String projectGroupId = groupId(model);
+            while (model != null && chain.add(pom)) {
+                addImportedReactorPoms(model, projectGroupId, reactorPoms, needed);
+                Parent parent = model.getParent();
+                if (parent == null) {
+                    break;
+                }
+                File parentPom = PomFiles.localParentPom(pom, model);
+                Model parentModel = null;
+                if (parentPom != null) {
+                    parentModel = models.containsKey(parentPom) ? models.get(parentPom) : PomFiles.readRawModel(parentPom);
+                    if (!parent.getId().equals(groupId(parentModel) + ':' + parentModel.getArtifactId() + ":pom:" + version(parentModel))) {
+                        parentModel = null; //not the declared parent, Maven resolves it from the repositories
+                    }
+                }
+                if (parentModel == null) {
+                    File reactorParent = reactorPoms.get(parent.getGroupId() + ':' + parent.getArtifactId());
+                    if (reactorParent != null) {
+                        needed.add(reactorParent);
+                    }
+                }
+                pom = parentPom;
+                model = parentModel;
+            }
+            needed.remove(entry.getKey());
+            dependencies.put(entry.getKey(), needed);
+        }
+        return dependencies;
+    }
+
+    /**
+     * Adds the reactor POMs whose dependency management the model imports. Imports whose groupId is an expression
+     * other than the project's groupId are matched by artifactId only.
+     */
+    private static void addImportedReactorPoms(Model model, String projectGroupId, Map<String, File> reactorPoms, Set<File> needed) {
+        if (model.getDependencyManagement() == null) {
+            return;
+        }
+        for (Dependency dependency : model.getDependencyManagement().getDependencies()) {
+            if (!"import".equals(dependency.getScope())) {
+                continue;
+            }
+            String groupId = dependency.getGroupId();
+            if ("${project.groupId}".equals(groupId) || "${pom.groupId}".equals(groupId)) {
+                groupId = projectGroupId;
+            }
+            for (Map.Entry<String, File> reactorPom : reactorPoms.entrySet()) {
+                String reactorGroupId = reactorPom.getKey().substring(0, reactorPom.getKey().indexOf(':'));
+                String reactorArtifactId = reactorPom.getKey().substring(reactorGroupId.length() + 1);
+                if (reactorArtifactId.equals(dependency.getArtifactId())
+                        && (reactorGroupId.equals(groupId) || groupId == null || groupId.indexOf("${") >= 0)) {
+                    needed.add(reactorPom.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the given POMs and the reactor POMs they need, transitively, in reactor order. Reactor parents are
+     * included even when they are on disk, the parents of an imported BOM are only looked up among the reactor POMs
+     */
+    private static List<File> withReactorDependencies(List<File> poms, List<File> reactorOrder, Map<File, Set<File>> reactorDependencies,
+                                                      Map<File, Model> models, Map<String, File> reactorPoms) {
+        Set<File> closure = new HashSet<File>();
+        LinkedList<File> pending = new LinkedList<File>(poms);
+        while (!pending.isEmpty()) {
+            File pom = pending.removeFirst();
+            if (closure.add(pom)) {
+                pending.addAll(reactorDependencies.get(pom));
+                Parent parent = models.get(pom).getParent();
+                File reactorParent = parent == null ? null : reactorPoms.get(parent.getGroupId() + ':' + parent.getArtifactId());
+                if (reactorParent != null) {
+                    pending.add(reactorParent);
+                }
+            }
+        }
+        List<File> ordered = new ArrayList<File>(closure.size());
+        for (File pom : reactorOrder) {
+            if (closure.contains(pom)) {
+                ordered.add(pom);
+            }
+        }
+        return ordered;
+    }
+
+    private static String groupId(Model model) {
+        return model.getGroupId() != null || model.getParent() == null ? model.getGroupId() : model.getParent().getGroupId();
+    }
+
+    private static String version(Model model) {
+        return model.getVersion() != null || model.getParent() == null ? model.getVersion() : model.getParent().getVersion();
+    }
+
+    /**
+     * @return a request with the settings of the given one, sharing its repository cache
+     */
+    static ProjectBuildingRequest copyOf(ProjectBuildingRequest request) {
+        ProjectBuildingRequest copy = new DefaultProjectBuildingRequest();
+        copy.setOffline(request.isOffline());
+        copy.setForceUpdate(request.isForceUpdate());
+        copy.setRepositoryCache(request.getRepositoryCache());
+        copy.setLocalRepository(request.getLocalRepository());
+        copy.setRemoteRepositories(request.getRemoteRepositories());
+        copy.setPluginArtifactRepositories(request.getPluginArtifactRepositories());
+        copy.setServers(request.getServers());
+        copy.setMirrors(request.getMirrors());
+        copy.setProxies(request.getProxies());
+        copy.setSystemProperties(request.getSystemProperties());
+        copy.setUserProperties(request.getUserProperties());
+        copy.setProcessPlugins(request.isProcessPlugins());
+        copy.setResolveDependencies(request.isResolveDependencies());
+        copy.setValidationLevel(request.getValidationLevel());
+        copy.setActiveProfileIds(request.getActiveProfileIds());
+        copy.setInactiveProfileIds(request.getInactiveProfileIds());
+        copy.setProfiles(request.getProfiles());
+        copy.setBuildStartTime(request.getBuildStartTime());
+        copy.setTransferListener(request.getTransferListener());
+        return copy;
+    }
+
+    public List<MavenProject> getProjects() {
+        return projects;
+    }
+
+    public MavenProject findByBasedir(File basedir) throws IOException {
+        return projectsByBasedir.get(basedir.getCanonicalFile());
+    }
+
+    /**
+     * Builds the given POMs as one reactor, so they see each other.
+     */
+    private static class ModuleBuild implements Callable<List<MavenProject>> {
+        private final ProjectBuilder builder;
+        private final List<File> poms;
+        private final ProjectBuildingRequest buildingRequest;
+
+        private ModuleBuild(ProjectBuilder builder, List<File> poms, ProjectBuildingRequest buildingRequest) {
+            this.builder = builder;
+            this.poms = poms;
+            this.buildingRequest = buildingRequest;
+        }
+
+        public List<MavenProject> call() throws ProjectBuildingException {
+            if (poms.size() == 1) {
+                return Collections.singletonList(builder.build(poms.get(0), buildingRequest).getProject());
+            }
+            List<MavenProject> projects = new ArrayList<MavenProject>(poms.size());
+            for (ProjectBuildingResult result : builder.build(poms, false, buildingRequest)) {
+                projects.add(result.getProject());
+            }
+            return projects;
+        }
+    }
+
+    /**
+     * Daemon threads with the plugin class loader as context class loader, Plexus components look classes up through it.
+     */
+    private static class ModelBuilderThreadFactory implements ThreadFactory {
+        private final ClassLoader contextClassLoader = MavenReactor.class.getClassLoader();
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "m2metadata-model-builder-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setContextClassLoader(contextClassLoader);
+            return thread;
+        }
+    }
+
+    private static class SharedRepositoryCache implements RepositoryCache {
+        private final Map<Object, Object> cache = new ConcurrentHashMap<Object, Object>();
+
+        public Object get(RepositoryRequest request, Object key) {
+            return cache.get(key);
+        }
+
+        public void put(RepositoryRequest request, Object key, Object data) {
+            cache.put(key, data);
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package org.gradle.plugin.maven;
+
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionRequestPopulationException;
+import org.apache.maven.execution.MavenExecutionRequestPopulator;
+import org.apache.maven.model.building.ModelBuildingRequest;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectBuilder;
+import org.apache.maven.project.ProjectBuildingException;
+import org.apache.maven.project.ProjectBuildingRequest;
+import org.apache.maven.settings.Settings;
+import org.apache.maven.settings.building.DefaultSettingsBuildingRequest;
+import org.apache.maven.settings.building.SettingsBuilder;
+import org.apache.maven.settings.building.SettingsBuildingException;
+import org.apache.maven.settings.building.SettingsBuildingRequest;
+import org.codehaus.plexus.ContainerConfiguration;
+import org.codehaus.plexus.DefaultContainerConfiguration;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.PlexusContainerException;
+import org.codehaus.plexus.classworlds.ClassWorld;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.gradle.BuildAdapter;
+import org.gradle.BuildResult;
+import org.gradle.api.GradleException;
+import org.gradle.api.InvalidUserDataException;
+import org.gradle.api.Project;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.logging.Logger;
+import org.gradle.plugin.maven.ModuleMetadata.ModuleRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Build-scoped holder of the Plexus container, the effective Maven settings and the reactor.
+ * One instance is registered on the root project and shared by all the projects the plugin is applied to,
+ * the container is disposed when the build finishes.
+ * The container and the settings are only created when a module misses the {@link ModuleMetadataCache}.
+ */
+class MavenSessionService {
+
+    private static final String SERVICE_KEY = "m2metadataSessionService";
+    private static final String POM_FILE_NAME = "pom.xml";
+
+    private final File defaultUserSettingsFile;
+    private final File defaultGlobalSettingsFile;
+    private final Project rootProject;
+    private final PluginOptions options;
+    private final DeferredConfiguration deferredConfiguration = new DeferredConfiguration();
+    private final ConfigurationProfiler profiler;
+    private final ModuleMetadataCache metadataCache;
+    private final Map<File, ModuleMetadata> modules = new HashMap<File, ModuleMetadata>();
+    private final RepositoryRegistry repositoryRegistry = new RepositoryRegistry();
+    private List<ModuleMetadata> reactorModules;
+    private ReactorIndex reactorIndex;
+    private ModuleGraph moduleGraph;
+    private DefaultPlexusContainer container;
+    private Settings mavenSettings;
+    private RepositoryMirrors mirrors;
+    private FastPomReader fastPomReader;
+    private MavenReactor reactor;
+
+    private MavenSessionService(Project rootProject) {
+        this.rootProject = rootProject;
+        options = new PluginOptions(rootProject);
+        profiler = new ConfigurationProfiler(options.isProfiling());
+        defaultUserSettingsFile = new File(new File(System.getProperty("user.home"), ".m2"), "settings.xml");
+        defaultGlobalSettingsFile = new File(System.getProperty("maven.home", System.getProperty("user.dir", "")), "conf/settings.xml");
+        metadataCache = new ModuleMetadataCache(rootProject.getProjectDir(), options.isFastPomReader() ? "fast" : "embedder",
+                defaultUserSettingsFile, defaultGlobalSettingsFile);
+    }
+
+    public static synchronized MavenSessionService get(Project project) {
+        Project rootProject = project.getRootProject();
+        if (rootProject.hasProperty(SERVICE_KEY)) {
+            MavenSessionService service = (MavenSessionService) rootProject.property(SERVICE_KEY);
+            if (service != null) {
+                return service;
+            }
+        }
+        final MavenSessionService service = new MavenSessionService(rootProject);
+        rootProject.setProperty(SERVICE_KEY, service);
+        if (rootProject.getTasks().findByName(ModuleGraphReportTask.TASK_NAME) == null) {
+            ModuleGraphReportTask graphReport = rootProject.getTasks().add(ModuleGraphReportTask.TASK_NAME, ModuleGraphReportTask.class);
+            graphReport.setDescription("Displays the fan-in, fan-out and depth of the Maven reactor modules.");
+        }
+        if (rootProject.getTasks().findByName(GenerateGradleBuildTask.TASK_NAME) == null) {
+            GenerateGradleBuildTask generateBuild = rootProject.getTasks().add(GenerateGradleBuildTask.TASK_NAME, GenerateGradleBuildTask.class);
+            generateBuild.setDescription("Generates static Gradle build scripts from the Maven POMs, or verifies them with -P" + PluginOptions.VERIFY_GRADLE_BUILD + "=true.");
+        }
+        project.getGradle().addBuildListener(new BuildAdapter() {
+            public void projectsEvaluated(Gradle gradle) {
+                try {
+                    service.deferredConfiguration.run(service);
+                } catch (Exception e) {
+                    throw new GradleException("failed to read Maven project", e);
+                }
+            }
+
+            public void buildFinished(BuildResult result) {
+                service.dispose();
+                service.reportProfile();
+            }
+        });
+        return service;
+    }
+
+    public Project getRootProject() {
+        return rootProject;
+    }
+
+    public PluginOptions getOptions() {
+        return options;
+    }
+
+    public DeferredConfiguration getDeferredConfiguration() {
+        return deferredConfiguration;
+    }
+
+    public ConfigurationProfiler getProfiler() {
+        return profiler;
+    }
+
+    public synchronized DefaultPlexusContainer getContainer() throws PlexusContainerException {
+        if (container == null) {
+            ConfigurationProfiler.Timer timer = profiler.start(ConfigurationProfiler.BUILD_MODULE, "buildContainer");
+            try {
+                container = buildContainer();
+            } finally {
+                timer.stop();
+            }
+        }
+        return container;
+    }
+
+    public synchronized Settings getSettings() throws PlexusContainerException, ComponentLookupException, IOException, SettingsBuildingException {
+        if (mavenSettings == null) {
+            ConfigurationProfiler.Timer timer = profiler.start(ConfigurationProfiler.BUILD_MODULE, "readSettings");
+            try {
+                mavenSettings = readSettings();
+            } finally {
+                timer.stop();
+            }
+        }
+        return mavenSettings;
+    }
+
+    public synchronized RepositoryMirrors getMirrors() throws PlexusContainerException, ComponentLookupException, IOException, SettingsBuildingException {
+        if (mirrors == null) {
+            mirrors = new RepositoryMirrors(getSettings().getMirrors());
+        }
+        return mirrors;
+    }
+
+    /**
+     * Returns the repositories the project of the given module should declare with the mirrors of the settings applied,
+     * registered build-wide, or only the mirror set by {@link PluginOptions#getMirror()}.
+     * Mirrors are looked up in the raw settings files, so Plexus isn't started when the metadata is cached,
+     * the effective settings are read only if the raw ones can't be read without it or can't resolve the single mirror.
+     */
+    public synchronized List<ModuleRepository> getRepositories(ModuleMetadata module) throws PlexusContainerException, ComponentLookupException, IOException, SettingsBuildingException {
+        FastPomReader fastPomReader = getFastPomReader();
+        String mirrorId = options.getMirror();
+        if (mirrorId == null) {
+            RepositoryMirrors settingsMirrors = fastPomReader.isSettingsSupported() ? fastPomReader.getMirrors() : getMirrors();
+            return repositoryRegistry.register(settingsMirrors.apply(module.getRepositories()));
+        }
+        ModuleRepository mirror = fastPomReader.getMirrors().getMirror(mirrorId);
+        if (mirror == null) {
+            mirror = getMirrors().getMirror(mirrorId);
+        }
+        if (mirror == null) {
+            throw new InvalidUserDataException("No mirror with id " + mirrorId + " in the Maven settings");
+        }
+        return Collections.singletonList(repositoryRegistry.register(mirror));
+    }
+
+    /**
+     * Returns the metadata of the Maven module in the directory of the given project, from the metadata cache
+     * if it's up to date, from the reactor otherwise.
+     */
+    public synchronized ModuleMetadata getModule(Project project) throws PlexusContainerException, ComponentLookupException, MavenExecutionRequestPopulationException, ProjectBuildingException, IOException, SettingsBuildingException {
+        File basedir = project.getProjectDir().getCanonicalFile();
+        ModuleMetadata module = modules.get(basedir);
+        if (module == null) {
+            ConfigurationProfiler.Timer timer = profiler.start(project.getPath(), "loadMetadataCache");
+            String key;
+            try {
+                key = metadataCache.key(basedir);
+                module = key == null ? null : metadataCache.load(basedir, key);
+            } finally {
+                timer.stop();
+            }
+            if (module == null) {
+                profiler.increment(ConfigurationProfiler.Counter.CACHE_MISSES);
+                module = options.isFastPomReader() ? readFast(project.getPath(), basedir) : null;
+                if (module == null) {
+                    MavenProject mavenProject = buildMavenProject(project.getPath(), basedir, !options.isFastPomReader());
+                    module = ModuleMetadata.from(mavenProject);
+                }
+                if (key != null) {
+                    timer = profiler.start(project.getPath(), "storeMetadataCache");
+                    try {
+                        metadataCache.store(basedir, key, module);
+                    } finally {
+                        timer.stop();
+                    }
+                }
+            } else {
+                profiler.increment(ConfigurationProfiler.Counter.CACHE_HITS);
+            }
+            modules.put(basedir, module);
+        }
+        return module;
+    }
+
+    /**
+     * Returns the metadata of all the Maven modules of the build, i.e. all the Gradle projects having a pom.xml.
+     */
+    public synchronized List<ModuleMetadata> getReactorModules() throws PlexusContainerException, ComponentLookupException, MavenExecutionRequestPopulationException, ProjectBuildingException, IOException, SettingsBuildingException {
+        if (reactorModules == null) {
+            List<ModuleMetadata> result = new ArrayList<ModuleMetadata>();
+            for (Project project : rootProject.getAllprojects()) {
+                if (new File(project.getProjectDir(), POM_FILE_NAME).isFile()) {
+                    result.add(getModule(project));
+                }
+            }
+            reactorModules = Collections.unmodifiableList(result);
+        }
+        return reactorModules;
+    }
+
+    public synchronized ReactorIndex getReactorIndex() throws PlexusContainerException, ComponentLookupException, MavenExecutionRequestPopulationException, ProjectBuildingException, IOException, SettingsBuildingException {
+        if (reactorIndex == null) {
+            reactorIndex = ReactorIndex.build(getReactorModules(), rootProject.getAllprojects());
+        }
+        return reactorIndex;
+    }
+
+    public synchronized ModuleGraph getModuleGraph() throws PlexusContainerException, ComponentLookupException, MavenExecutionRequestPopulationException, ProjectBuildingException, IOException, SettingsBuildingException {
+        if (moduleGraph == null) {
+            moduleGraph = ModuleGraph.build(getReactorModules(), getReactorIndex());
+        }
+        return moduleGraph;
+    }
+
+    /**
+     * Reads the module with the fast POM reader, {@code null} if it must be read by the embedder.
+     */
+    private ModuleMetadata readFast(String projectPath, File basedir) throws IOException {
+        ConfigurationProfiler.Timer timer = profiler.start(projectPath, "readPomFast");
+        try {
+            ModuleMetadata module = getFastPomReader().read(basedir);
+            profiler.increment(ConfigurationProfiler.Counter.FAST_POM_READS);
+            return module;
+        } catch (FastPomReader.UnsupportedPomException e) {
+            rootProject.getLogger().info("Reading {} with the Maven embedder: {}", projectPath, e.getMessage());
+            profiler.increment(ConfigurationProfiler.Counter.FAST_POM_FALLBACKS);
+            return null;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private FastPomReader getFastPomReader() {
+        if (fastPomReader == null) {
+            fastPomReader = new FastPomReader(defaultUserSettingsFile, defaultGlobalSettingsFile);
+        }
+        return fastPomReader;
+    }
+
+    /**
+     * @param fromReactor whether to take the module from the root reactor, built whole on the first call,
+     * rather than building the module on its own
+     */
+    private MavenProject buildMavenProject(String projectPath, File basedir, boolean fromReactor) throws PlexusContainerException, ComponentLookupException, MavenExecutionRequestPopulationException, ProjectBuildingException, IOException, SettingsBuildingException {
+        MavenProject mavenProject = fromReactor ? getReactor().findByBasedir(basedir) : null;
+        if (mavenProject == null) { //not a module of the root reactor, or a fast reader fallback, read it on its own
+            ProjectBuilder builder = getContainer().lookup(ProjectBuilder.class);
+            ProjectBuildingRequest buildingRequest = newProjectBuildingRequest(newExecutionRequest());
+            ConfigurationProfiler.Timer timer = profiler.start(projectPath, "buildModel");
+            try {
+                mavenProject = builder.build(new File(basedir, POM_FILE_NAME), buildingRequest).getProject();
+            } finally {
+                timer.stop();
+            }
+            profiler.increment(ConfigurationProfiler.Counter.MODELS_BUILT);
+        }
+        return mavenProject;
+    }
+
+    public MavenExecutionRequest newExecutionRequest() throws PlexusContainerException, ComponentLookupException, MavenExecutionRequestPopulationException, IOException, SettingsBuildingException {
+        MavenExecutionRequest executionRequest = new DefaultMavenExecutionRequest();
+        MavenExecutionRequestPopulator populator = getContainer().lookup(MavenExecutionRequestPopulator.class);
+        populator.populateFromSettings(executionRequest, getSettings());
+        populator.populateDefaults(executionRequest);
+        return executionRequest;
+    }
+
+    public ProjectBuildingRequest newProjectBuildingRequest(MavenExecutionRequest executionRequest) {
+        ProjectBuildingRequest buildingRequest = executionRequest.getProjectBuildingRequest();
+        buildingRequest.setValidationLevel(ModelBuildingRequest.VALIDATION_LEVEL_MINIMAL);
+        return buildingRequest;
+    }
+
+    /**
+     * Reads the whole multi-module reactor from the root project's pom.xml on the first call, later calls reuse it.
+     * The module models are built in parallel, see {@link PluginOptions#getModelBuildingThreads()}.
+     */
+    public synchronized MavenReactor getReactor() throws PlexusContainerException, ComponentLookupException, MavenExecutionRequestPopulationException, ProjectBuildingException, IOException, SettingsBuildingException {
+        if (reactor == null) {
+            ProjectBuildingRequest buildingRequest = newProjectBuildingRequest(newExecutionRequest());
+            ProjectBuilder builder = getContainer().lookup(ProjectBuilder.class);
+            ConfigurationProfiler.Timer timer = profiler.start(ConfigurationProfiler.BUILD_MODULE, "readReactor");
+            try {
+                reactor = MavenReactor.readParallel(builder, rootPom(), buildingRequest, options.getModelBuildingThreads());
+            } finally {
+                timer.stop();
+            }
+            profiler.add(ConfigurationProfiler.Counter.MODELS_BUILT, reactor.getProjects().size());
+        }
+        return reactor;
+    }
+
+    private File rootPom() {
+        return new File(rootProject.getProjectDir(), POM_FILE_NAME);
+    }
+
+    private DefaultPlexusContainer buildContainer() throws PlexusContainerException {
+        ContainerConfiguration containerConfiguration = new DefaultContainerConfiguration()
+                .setClassWorld(new ClassWorld("plexus.core", this.getClass().getClassLoader()))
+                .setName("mavenCore");
+        return new DefaultPlexusContainer(containerConfiguration);
+    }
+
+    private Settings readSettings() throws PlexusContainerException, IOException, ComponentLookupException, SettingsBuildingException {
+        Properties props = new Properties();
+        props.putAll(System.getProperties());
+        Properties envVars = CommandLineUtils.getSystemEnvVars();
+        for (Map.Entry<Object, Object> objectObjectEntry : envVars.entrySet()) {
+            props.setProperty("env." + objectObjectEntry.getKey().toString(), objectObjectEntry.getValue().toString());
+        }
+        SettingsBuildingRequest request = new DefaultSettingsBuildingRequest();
+        request.setGlobalSettingsFile(defaultGlobalSettingsFile);
+        request.setUserSettingsFile(defaultUserSettingsFile);
+        request.setSystemProperties(props);
+        return getContainer().lookup(SettingsBuilder.class).build(request).getEffectiveSettings();
+    }
+
+    private void reportProfile() {
+        Logger logger = rootProject.getLogger();
+        if (options.isProfiling()) {
+            try {
+                profiler.report(logger, new File(rootProject.getBuildDir(), "m2metadata"));
+            } catch (IOException e) {
+                logger.warn("Failed to write the configuration profile: {}", e.getMessage());
+            }
+        } else {
+            logger.info("Maven metadata: {} models built, {} cache hits, {} cache misses", profiler.get(ConfigurationProfiler.Counter.MODELS_BUILT),
+                    profiler.get(ConfigurationProfiler.Counter.CACHE_HITS), profiler.get(ConfigurationProfiler.Counter.CACHE_MISSES));
+        }
+    }
+
+    synchronized void dispose() {
+        if (container != null) {
+            container.dispose();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.gradle.plugin.maven;
+
+import org.gradle.api.Project;
+import org.gradle.plugin.maven.ModuleMetadata.ModuleDependency;
+
+import java.util.*;
+
+/**
+ * Build-level graph of the dependencies between the reactor modules, computed once from the module metadata.
+ * Projects are sorted topologically, every project comes after the projects it depends on.
+ */
+class ModuleGraph {
+
+    private final List<Node> sortedNodes;
+    private final Map<Project, Node> nodesByProject;
+    private final List<Project> cyclicProjects;
+
+    private ModuleGraph(List<Node> sortedNodes, Map<Project, Node> nodesByProject, List<Project> cyclicProjects) {
+        this.sortedNodes = sortedNodes;
+        this.nodesByProject = nodesByProject;
+        this.cyclicProjects = cyclicProjects;
+    }
+
+    public static ModuleGraph build(Iterable<ModuleMetadata> modules, ReactorIndex reactorIndex) {
+        Map<Project, Node> nodesByProject = new LinkedHashMap<Project, Node>();
+        for (ModuleMetadata module : modules) {
+            Project project = reactorIndex.findProject(module.getGroupId(), module.getArtifactId(), module.getVersion());
+            if (project != null && !nodesByProject.containsKey(project)) {
+                nodesByProject.put(project, new Node(project, module));
+            }
+        }
+        for (Node node : nodesByProject.values()) {
+            for (ModuleDependency dependency : node.module.getDependencies()) {
+                Project dependencyProject = reactorIndex.findProject(dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion());
+                Node dependencyNode = dependencyProject == null ? null : nodesByProject.get(dependencyProject);
+                if (dependencyNode != null && dependencyNode != node) {
+                    node.dependencies.add(dependencyNode);
+                    dependencyNode.dependents.add(node);
+                }
+            }
+        }
+        return sort(nodesByProject);
+    }
+
+    /**
+     * Kahn's algorithm, ties are broken by module order, so the result is stable between builds.
+     * Modules on a cycle can't be sorted, they are appended in module order.
+     */
+    private static ModuleGraph sort(Map<Project, Node> nodesByProject) {
+        Map<Node, Integer> unsortedDependencies = new HashMap<Node, Integer>();
+        LinkedList<Node> ready = new LinkedList<Node>();
+        for (Node node : nodesByProject.values()) {
+            unsortedDependencies.put(node, node.dependencies.size());
+            if (node.dependencies.isEmpty()) {
+                ready.add(node);
+            }
+        }
+        List<Node> sorted = new ArrayList<Node>(nodesByProject.size());
+        while (!ready.isEmpty()) {
+            Node node = ready.removeFirst();
+            sorted.add(node);
+            for (Node dependent : node.dependents) {
+                int remaining = unsortedDependencies.get(dependent) - 1;
+                unsortedDependencies.put(dependent, remaining);
+                if (remaining == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        List<Project> cyclicProjects = new ArrayList<Project>();
+        if (sorted.size() < nodesByProject.size()) {
+            for (Node node : nodesByProject.values()) {
+                if (unsortedDependencies.get(node) > 0) {
+                    sorted.add(node);
+                    cyclicProjects.add(node.project);
+                }
+            }
+        }
+        for (Node node : sorted) {
+            for (Node dependency : node.dependencies) {
+                node.depth = Math.max(node.depth, dependency.depth + 1);
+            }
+        }
+        return new ModuleGraph(Collections.unmodifiableList(sorted), nodesByProject, Collections.unmodifiableList(cyclicProjects));
+    }
+
+    /**
+     * @return the projects of the reactor modules, dependencies first
+     */
+    public List<Project> getProjects() {
+        List<Project> projects = new ArrayList<Project>(sortedNodes.size());
+        for (Node node : sortedNodes) {
+            projects.add(node.project);
+        }
+        return projects;
+    }
+
+    public boolean contains(Project project) {
+        return nodesByProject.containsKey(project);
+    }
+
+    public ModuleMetadata getModule(Project project) {
+        return node(project).module;
+    }
+
+    /**
+     * @return the reactor projects the given one depends on directly, in any scope
+     */
+    public Set<Project> getDependencies(Project project) {
+        return projects(node(project).dependencies);
+    }
+
+    /**
+     * @return the reactor projects depending directly on the given one, in any scope
+     */
+    public Set<Project> getDependents(Project project) {
+        return projects(node(project).dependents);
+    }
+
+    public int getFanIn(Project project) {
+        return node(project).dependents.size();
+    }
+
+    public int getFanOut(Project project) {
+        return node(project).dependencies.size();
+    }
+
+    /**
+     * @return the length of the longest chain of reactor dependencies below the given project, 0 if it has none
+     */
+    public int getDepth(Project project) {
+        return node(project).depth;
+    }
+
+    /**
+     * @return the projects on dependency cycles, they are sorted after all the others in module order
+     */
+    public List<Project> getCyclicProjects() {
+        return cyclicProjects;
+    }
+
+    private Node node(Project project) {
+        Node node = nodesByProject.get(project);
+        if (node == null) {
+            throw new IllegalArgumentException(project + " is not a module of the Maven reactor");
+        }
+        return node;
+    }
+
+    private static Set<Project> projects(Set<Node> nodes) {
+        Set<Project> projects = new LinkedHashSet<Project>();
+        for (Node node : nodes) {
+            projects.add(node.project);
+        }
+        return projects;
+    }
+
+    private static class Node {
+        private final Project project;
+        private final ModuleMetadata module;
+        private final Set<Node> dependencies = new LinkedHashSet<Node>();
+        private final Set<Node> dependents = new LinkedHashSet<Node>();
+        private int depth;
+
+        private Node(Project project, ModuleMetadata module) {
+            this.project = project;
+            this.module = module;
+        }
+    }
+}
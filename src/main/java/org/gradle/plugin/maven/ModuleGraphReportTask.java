@@ -0,0 +1,48 @@
+package org.gradle.plugin.maven;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.api.tasks.TaskAction;
+
+import java.util.*;
+
+/**
+ * Prints the reactor modules with their fan-in (modules depending on them), fan-out (modules they depend on)
+ * and depth (longest chain of module dependencies below them), modules most depended on first.
+ * Modules with both high fan-in and high depth are the ones serializing the build.
+ */
+public class ModuleGraphReportTask extends DefaultTask {
+
+    static final String TASK_NAME = "mavenModuleGraph";
+
+    @TaskAction
+    public void report() {
+        final ModuleGraph graph;
+        try {
+            graph = MavenSessionService.get(getProject()).getModuleGraph();
+        } catch (Exception e) {
+            throw new GradleException("failed to read Maven project", e);
+        }
+        List<Project> projects = graph.getProjects();
+        Collections.sort(projects, new Comparator<Project>() {
+            public int compare(Project o1, Project o2) {
+                int byFanIn = graph.getFanIn(o2) - graph.getFanIn(o1);
+                if (byFanIn != 0) {
+                    return byFanIn;
+                }
+                int byDepth = graph.getDepth(o2) - graph.getDepth(o1);
+                return byDepth != 0 ? byDepth : o1.getPath().compareTo(o2.getPath());
+            }
+        });
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-60s %7s %7s %7s%n", "Module", "Fan-in", "Fan-out", "Depth"));
+        for (Project project : projects) {
+            report.append(String.format("%-60s %7d %7d %7d%n", project.getPath(), graph.getFanIn(project), graph.getFanOut(project), graph.getDepth(project)));
+        }
+        if (!graph.getCyclicProjects().isEmpty()) {
+            report.append("Modules on dependency cycles: ").append(graph.getCyclicProjects()).append(String.format("%n"));
+        }
+        getLogger().quiet(report.toString());
+    }
+}
@@ -0,0 +1,446 @@
+package org.gradle.plugin.maven;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Exclusion;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.Repository;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.artifact.ProjectArtifact;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Everything the plugin needs from a Maven module to configure the matching Gradle project.
+ * It is extracted from the built {@link MavenProject} and can be written to and read from the metadata cache.
+ */
+class ModuleMetadata {
+
+    private static final String MAVEN_COMPILER_PLUGIN_KEY = "org.apache.maven.plugins:maven-compiler-plugin";
+    private static final String MAVEN_SOURCE_PLUGIN_KEY = "org.apache.maven.plugins:maven-source-plugin";
+    private static final String MAVEN_SUREFIRE_PLUGIN_KEY = "org.apache.maven.plugins:maven-surefire-plugin";
+    private static final String SOURCE_LEVEL_COMPILE_PLUGIN_SETTING = "source";
+    private static final String TARGET_LEVEL_COMPILE_PLUGIN_SETTING = "target";
+
+    private final File basedir;
+    private final String groupId;
+    private final String artifactId;
+    private final String version;
+    private final String packaging;
+    private final boolean snapshot;
+    private final String sourceLevel;
+    private final String targetLevel;
+    private final boolean sourcePluginPresent;
+    private final List<ModuleRepository> repositories;
+    private final List<ModuleDependency> dependencies;
+    private final ModuleTestSettings testSettings;
+
+    ModuleMetadata(File basedir, String groupId, String artifactId, String version, String packaging, boolean snapshot,
+                   String sourceLevel, String targetLevel, boolean sourcePluginPresent,
+                   List<ModuleRepository> repositories, List<ModuleDependency> dependencies, ModuleTestSettings testSettings) {
+        this.basedir = basedir;
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.version = version;
+        this.packaging = packaging;
+        this.snapshot = snapshot;
+        this.sourceLevel = sourceLevel;
+        this.targetLevel = targetLevel;
+        this.sourcePluginPresent = sourcePluginPresent;
+        this.repositories = Collections.unmodifiableList(repositories);
+        this.dependencies = Collections.unmodifiableList(dependencies);
+        this.testSettings = testSettings;
+    }
+
+    public static ModuleMetadata from(MavenProject mavenProject) {
+        String sourceLevel = null;
+        String targetLevel = null;
+        Plugin mavenCompilerPlugin = mavenProject.getPlugin(MAVEN_COMPILER_PLUGIN_KEY);
+        if (mavenCompilerPlugin != null && mavenCompilerPlugin.getConfiguration() != null) {
+            Xpp3Dom configuration = (Xpp3Dom) mavenCompilerPlugin.getConfiguration();
+            Xpp3Dom source = configuration.getChild(SOURCE_LEVEL_COMPILE_PLUGIN_SETTING);
+            if (source != null) {
+                sourceLevel = source.getValue();
+            }
+            Xpp3Dom target = configuration.getChild(TARGET_LEVEL_COMPILE_PLUGIN_SETTING);
+            if (target != null) {
+                targetLevel = target.getValue();
+            }
+        }
+        List<ModuleRepository> repositories = new ArrayList<ModuleRepository>();
+        for (Repository repository : mavenProject.getRepositories()) {
+            repositories.add(new ModuleRepository(repository.getId(), repository.getUrl()));
+        }
+        List<ModuleDependency> dependencies = new ArrayList<ModuleDependency>();
+        for (Dependency dependency : mavenProject.getDependencies()) {
+            List<ModuleExclusion> exclusions = new ArrayList<ModuleExclusion>();
+            for (Exclusion exclusion : dependency.getExclusions()) {
+                exclusions.add(new ModuleExclusion(exclusion.getGroupId(), exclusion.getArtifactId()));
+            }
+            dependencies.add(new ModuleDependency(dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion(), dependency.getScope(), exclusions));
+        }
+        Plugin mavenSurefirePlugin = mavenProject.getPlugin(MAVEN_SUREFIRE_PLUGIN_KEY);
+        ModuleTestSettings testSettings = ModuleTestSettings.from(mavenSurefirePlugin == null ? null : (Xpp3Dom) mavenSurefirePlugin.getConfiguration());
+        return new ModuleMetadata(mavenProject.getBasedir(), mavenProject.getGroupId(), mavenProject.getArtifactId(), mavenProject.getVersion(),
+                mavenProject.getPackaging(), new ProjectArtifact(mavenProject).isSnapshot(), sourceLevel, targetLevel,
+                mavenProject.getPlugin(MAVEN_SOURCE_PLUGIN_KEY) != null, repositories, dependencies, testSettings);
+    }
+
+    public static ModuleMetadata readFrom(DataInput in, File basedir) throws IOException {
+        String groupId = in.readUTF();
+        String artifactId = in.readUTF();
+        String version = in.readUTF();
+        String packaging = in.readUTF();
+        boolean snapshot = in.readBoolean();
+        String sourceLevel = readNullable(in);
+        String targetLevel = readNullable(in);
+        boolean sourcePluginPresent = in.readBoolean();
+        int repositoryCount = in.readInt();
+        List<ModuleRepository> repositories = new ArrayList<ModuleRepository>(repositoryCount);
+        for (int i = 0; i < repositoryCount; i++) {
+            repositories.add(new ModuleRepository(in.readUTF(), in.readUTF()));
+        }
+        int dependencyCount = in.readInt();
+        List<ModuleDependency> dependencies = new ArrayList<ModuleDependency>(dependencyCount);
+        for (int i = 0; i < dependencyCount; i++) {
+            String depGroupId = in.readUTF();
+            String depArtifactId = in.readUTF();
+            String depVersion = readNullable(in);
+            String scope = readNullable(in);
+            int exclusionCount = in.readInt();
+            List<ModuleExclusion> exclusions = new ArrayList<ModuleExclusion>(exclusionCount);
+            for (int j = 0; j < exclusionCount; j++) {
+                exclusions.add(new ModuleExclusion(in.readUTF(), in.readUTF()));
+            }
+            dependencies.add(new ModuleDependency(depGroupId, depArtifactId, depVersion, scope, exclusions));
+        }
+        return new ModuleMetadata(basedir, groupId, artifactId, version, packaging, snapshot, sourceLevel, targetLevel,
+                sourcePluginPresent, repositories, dependencies, ModuleTestSettings.readFrom(in));
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(groupId);
+        out.writeUTF(artifactId);
+        out.writeUTF(version);
+        out.writeUTF(packaging);
+        out.writeBoolean(snapshot);
+        writeNullable(out, sourceLevel);
+        writeNullable(out, targetLevel);
+        out.writeBoolean(sourcePluginPresent);
+        out.writeInt(repositories.size());
+        for (ModuleRepository repository : repositories) {
+            out.writeUTF(repository.getId());
+            out.writeUTF(repository.getUrl());
+        }
+        out.writeInt(dependencies.size());
+        for (ModuleDependency dependency : dependencies) {
+            out.writeUTF(dependency.getGroupId());
+            out.writeUTF(dependency.getArtifactId());
+            writeNullable(out, dependency.getVersion());
+            writeNullable(out, dependency.getScope());
+            out.writeInt(dependency.getExclusions().size());
+            for (ModuleExclusion exclusion : dependency.getExclusions()) {
+                out.writeUTF(exclusion.getGroupId());
+                out.writeUTF(exclusion.getArtifactId());
+            }
+        }
+        testSettings.writeTo(out);
+    }
+
+    private static String readNullable(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullable(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    public File getBasedir() {
+        return basedir;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getPackaging() {
+        return packaging;
+    }
+
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    public String getSourceLevel() {
+        return sourceLevel;
+    }
+
+    public String getTargetLevel() {
+        return targetLevel;
+    }
+
+    public boolean isSourcePluginPresent() {
+        return sourcePluginPresent;
+    }
+
+    /**
+     * @return the repositories as the POMs declare them, the mirrors of the settings aren't applied
+     */
+    public List<ModuleRepository> getRepositories() {
+        return repositories;
+    }
+
+    public List<ModuleDependency> getDependencies() {
+        return dependencies;
+    }
+
+    public ModuleTestSettings getTestSettings() {
+        return testSettings;
+    }
+
+    static class ModuleRepository {
+        private final String id;
+        private final String url;
+
+        ModuleRepository(String id, String url) {
+            this.id = id;
+            this.url = url;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+    }
+
+    static class ModuleDependency {
+        private final String groupId;
+        private final String artifactId;
+        private final String version;
+        private final String scope;
+        private final List<ModuleExclusion> exclusions;
+
+        ModuleDependency(String groupId, String artifactId, String version, String scope, List<ModuleExclusion> exclusions) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.scope = scope;
+            this.exclusions = Collections.unmodifiableList(exclusions);
+        }
+
+        public String getGroupId() {
+            return groupId;
+        }
+
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public String getScope() {
+            return scope;
+        }
+
+        public List<ModuleExclusion> getExclusions() {
+            return exclusions;
+        }
+    }
+
+    static class ModuleExclusion {
+        private final String groupId;
+        private final String artifactId;
+
+        ModuleExclusion(String groupId, String artifactId) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+        }
+
+        public String getGroupId() {
+            return groupId;
+        }
+
+        public String getArtifactId() {
+            return artifactId;
+        }
+    }
+
+    /**
+     * The maven-surefire-plugin configuration, as written in the POMs, {@code null} for the parameters which aren't set.
+     */
+    static class ModuleTestSettings {
+        private static final String[] PARAMETERS = {"forkCount", "forkMode", "reuseForks", "parallel", "threadCount", "argLine"};
+
+        private final Map<String, String> parameters;
+        private final List<String> includes;
+        private final List<String> excludes;
+        private final Map<String, String> systemProperties;
+
+        ModuleTestSettings(Map<String, String> parameters, List<String> includes, List<String> excludes, Map<String, String> systemProperties) {
+            this.parameters = Collections.unmodifiableMap(parameters);
+            this.includes = Collections.unmodifiableList(includes);
+            this.excludes = Collections.unmodifiableList(excludes);
+            this.systemProperties = Collections.unmodifiableMap(systemProperties);
+        }
+
+        public static ModuleTestSettings from(Xpp3Dom configuration) {
+            Map<String, String> parameters = new HashMap<String, String>();
+            List<String> includes = new ArrayList<String>();
+            List<String> excludes = new ArrayList<String>();
+            Map<String, String> systemProperties = new LinkedHashMap<String, String>();
+            if (configuration != null) {
+                for (String parameter : PARAMETERS) {
+                    Xpp3Dom child = configuration.getChild(parameter);
+                    if (child != null && child.getValue() != null && child.getValue().trim().length() > 0) {
+                        parameters.put(parameter, child.getValue().trim());
+                    }
+                }
+                addValues(configuration.getChild("includes"), includes);
+                addValues(configuration.getChild("excludes"), excludes);
+                Xpp3Dom properties = configuration.getChild("systemPropertyVariables");
+                if (properties != null) {
+                    for (Xpp3Dom property : properties.getChildren()) {
+                        systemProperties.put(property.getName(), property.getValue() == null ? "" : property.getValue());
+                    }
+                }
+            }
+            return new ModuleTestSettings(parameters, includes, excludes, systemProperties);
+        }
+
+        /**
+         * @param configuration the leaf elements of the configuration by path, e.g. {@code includes/include}
+         */
+        public static ModuleTestSettings from(Map<String, List<String>> configuration) {
+            Map<String, String> parameters = new HashMap<String, String>();
+            Map<String, String> systemProperties = new LinkedHashMap<String, String>();
+            for (String parameter : PARAMETERS) {
+                List<String> values = configuration.get(parameter);
+                if (values != null && !values.isEmpty()) {
+                    parameters.put(parameter, values.get(0));
+                }
+            }
+            for (Map.Entry<String, List<String>> entry : configuration.entrySet()) {
+                if (entry.getKey().startsWith("systemPropertyVariables/")) {
+                    systemProperties.put(entry.getKey().substring("systemPropertyVariables/".length()), entry.getValue().get(0));
+                }
+            }
+            List<String> includes = configuration.get("includes/include");
+            List<String> excludes = configuration.get("excludes/exclude");
+            return new ModuleTestSettings(parameters, includes == null ? new ArrayList<String>() : includes,
+                    excludes == null ? new ArrayList<String>() : excludes, systemProperties);
+        }
+
+        private static void addValues(Xpp3Dom parent, List<String> values) {
+            if (parent != null) {
+                for (Xpp3Dom child : parent.getChildren()) {
+                    if (child.getValue() != null && child.getValue().trim().length() > 0) {
+                        values.add(child.getValue().trim());
+                    }
+                }
+            }
+        }
+
+        private static ModuleTestSettings readFrom(DataInput in) throws IOException {
+            Map<String, String> parameters = new HashMap<String, String>();
+            for (String parameter : PARAMETERS) {
+                String value = readNullable(in);
+                if (value != null) {
+                    parameters.put(parameter, value);
+                }
+            }
+            List<String> includes = readList(in);
+            List<String> excludes = readList(in);
+            int propertyCount = in.readInt();
+            Map<String, String> systemProperties = new LinkedHashMap<String, String>();
+            for (int i = 0; i < propertyCount; i++) {
+                systemProperties.put(in.readUTF(), in.readUTF());
+            }
+            return new ModuleTestSettings(parameters, includes, excludes, systemProperties);
+        }
+
+        private void writeTo(DataOutput out) throws IOException {
+            for (String parameter : PARAMETERS) {
+                writeNullable(out, parameters.get(parameter));
+            }
+            writeList(out, includes);
+            writeList(out, excludes);
+            out.writeInt(systemProperties.size());
+            for (Map.Entry<String, String> property : systemProperties.entrySet()) {
+                out.writeUTF(property.getKey());
+                out.writeUTF(property.getValue());
+            }
+        }
+
+        private static List<String> readList(DataInput in) throws IOException {
+            int size = in.readInt();
+            List<String> values = new ArrayList<String>(size);
+            for (int i = 0; i < size; i++) {
+                values.add(in.readUTF());
+            }
+            return values;
+        }
+
+        private static void writeList(DataOutput out, List<String> values) throws IOException {
+            out.writeInt(values.size());
+            for (String value : values) {
+                out.writeUTF(value);
+            }
+        }
+
+        public String getForkCount() {
+            return parameters.get("forkCount");
+        }
+
+        public String getForkMode() {
+            return parameters.get("forkMode");
+        }
+
+        public String getReuseForks() {
+            return parameters.get("reuseForks");
+        }
+
+        public String getParallel() {
+            return parameters.get("parallel");
+        }
+
+        public String getThreadCount() {
+            return parameters.get("threadCount");
+        }
+
+        public String getArgLine() {
+            return parameters.get("argLine");
+        }
+
+        public List<String> getIncludes() {
+            return includes;
+        }
+
+        public List<String> getExcludes() {
+            return excludes;
+        }
+
+        public Map<String, String> getSystemProperties() {
+            return systemProperties;
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package org.gradle.plugin.maven;
+
+import com.google.common.io.Files;
+import org.apache.maven.artifact.ArtifactUtils;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.settings.Settings;
+import org.apache.maven.settings.io.xpp3.SettingsXpp3Reader;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Persistent cache of {@link ModuleMetadata}, one file per module under {@code .gradle/m2metadata} of the root project.
+ * An entry is valid as long as its key matches: a hash of the module's pom.xml, its parent chain,
+ * the imported BOMs, the settings files and the system and environment properties the POMs refer to.
+ * Parents and BOMs which aren't in the source tree are hashed from the local repository, a module whose
+ * SNAPSHOT parent or BOM isn't there yet has no key and isn't cached.
+ */
+class ModuleMetadataCache {
+
+    private static final int MAGIC = 0x4D324D44;
+    private static final int FORMAT_VERSION = 5;
+    private static final String ENV_PREFIX = "env.";
+    private static final String[] ALWAYS_HASHED_PROPERTIES = {"java.version", "os.name", "os.arch", "os.version"};
+    private static final Pattern PROPERTY_REFERENCE = Pattern.compile("\\$\\{([^}]+)\\}");
+
+    private final File cacheDir;
+    private final File rootDir;
+    private final String reader;
+    private final File[] settingsFiles;
+    private File localRepository;
+
+    /**
+     * @param reader the name of the way the metadata is read, part of the keys, so entries written by another reader miss
+     */
+    ModuleMetadataCache(File rootDir, String reader, File... settingsFiles) {
+        this.rootDir = rootDir;
+        this.cacheDir = new File(rootDir, ".gradle/m2metadata");
+        this.reader = reader;
+        this.settingsFiles = settingsFiles;
+    }
+
+    /**
+     * @return the key of the module's entry, {@code null} if the module can't be cached
+     */
+    public String key(File basedir) throws IOException {
+        MessageDigest digest = newDigest();
+        StringBuilder hashedText = new StringBuilder();
+        digestString(digest, String.valueOf(FORMAT_VERSION));
+        digestString(digest, reader);
+        if (!digestChain(new File(basedir, PomFiles.POM_FILE_NAME).getCanonicalFile(), digest, hashedText, new HashSet<File>())) {
+            return null;
+        }
+        for (File settingsFile : settingsFiles) {
+            digestString(digest, settingsFile.getPath());
+            if (settingsFile.isFile()) {
+                byte[] content = Files.toByteArray(settingsFile);
+                digest.update(content);
+                hashedText.append(new String(content, "UTF-8"));
+            }
+        }
+        for (Map.Entry<String, String> property : environment(hashedText).entrySet()) {
+            digestString(digest, property.getKey() + '=' + property.getValue());
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @return the cached metadata of the module, or {@code null} if there is no entry or it was written for another key
+     */
+    public ModuleMetadata load(File basedir, String key) {
+        File entry = entryFile(basedir);
+        if (!entry.isFile()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !in.readUTF().equals(key)) {
+                    return null;
+                }
+                return ModuleMetadata.readFrom(in, basedir);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null; //corrupted entry, will be rewritten
+        }
+    }
+
+    public void store(File basedir, String key, ModuleMetadata metadata) throws IOException {
+        File entry = entryFile(basedir);
+        File tmp = new File(cacheDir, entry.getName() + ".tmp");
+        cacheDir.mkdirs();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(key);
+            metadata.writeTo(out);
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(entry)) {
+            entry.delete();
+            if (!tmp.renameTo(entry)) {
+                tmp.delete();
+                throw new IOException("failed to write metadata cache entry " + entry);
+            }
+        }
+    }
+
+    private File entryFile(File basedir) {
+        try {
+            String relativePath = relativize(basedir.getCanonicalFile());
+            MessageDigest digest = newDigest();
+            digestString(digest, relativePath);
+            return new File(cacheDir, toHex(digest.digest()) + ".bin");
+        } catch (IOException e) {
+            throw new IllegalStateException("can't resolve module directory " + basedir, e);
+        }
+    }
+
+    private String relativize(File basedir) throws IOException {
+        String root = rootDir.getCanonicalPath();
+        String path = basedir.getPath();
+        return path.startsWith(root) ? path.substring(root.length()) : path;
+    }
+
+    /**
+     * Adds the given POM, its parents and the BOMs they import, with their own parents, to the digest.
+     * The POMs which aren't on disk next to the module are looked up in the local repository.
+     *
+     * @param digested the POM files already added to the digest, they are added once
+     * @return {@code false} if a SNAPSHOT parent or BOM isn't in the local repository or the coordinates of a BOM
+     * can't be resolved, the module's metadata may then change without its POMs changing
+     */
+    private boolean digestChain(File pom, MessageDigest digest, StringBuilder hashedText, Set<File> digested) throws IOException {
+        List<Model> chain = new ArrayList<Model>();
+        Set<File> chainFiles = new HashSet<File>();
+        while (pom != null && chainFiles.add(pom)) {
+            if (digested.add(pom)) {
+                byte[] content = Files.toByteArray(pom);
+                digest.update(content);
+                hashedText.append(new String(content, "UTF-8"));
+            }
+            Model model = PomFiles.readRawModel(pom);
+            chain.add(model);
+            Parent parent = model.getParent();
+            if (parent == null) {
+                break;
+            }
+            digestString(digest, parent.getGroupId() + ':' + parent.getArtifactId() + ':' + parent.getVersion());
+            pom = PomFiles.localParentPom(pom, model);
+            if (pom == null) {
+                pom = PomFiles.repositoryPom(localRepository(), parent.getGroupId(), parent.getArtifactId(), parent.getVersion());
+                if (pom == null && ArtifactUtils.isSnapshot(parent.getVersion())) {
+                    return false;
+                }
+            }
+        }
+        Map<String, String> properties = chainProperties(chain);
+        for (Model model : chain) {
+            if (model.getDependencyManagement() == null) {
+                continue;
+            }
+            for (Dependency dependency : model.getDependencyManagement().getDependencies()) {
+                if (!"import".equals(dependency.getScope()) || !"pom".equals(dependency.getType())) {
+                    continue;
+                }
+                String groupId = interpolate(dependency.getGroupId(), properties, 0);
+                String artifactId = interpolate(dependency.getArtifactId(), properties, 0);
+                String version = interpolate(dependency.getVersion(), properties, 0);
+                if (groupId == null || artifactId == null || version == null) {
+                    return false;
+                }
+                digestString(digest, "import " + groupId + ':' + artifactId + ':' + version);
+                File bom = PomFiles.repositoryPom(localRepository(), groupId, artifactId, version);
+                if (bom == null) {
+                    if (ArtifactUtils.isSnapshot(version)) {
+                        return false;
+                    }
+                } else if (!digested.contains(bom) && !digestChain(bom, digest, hashedText, digested)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the properties the coordinates of the BOMs imported by the chain may refer to: the model values
+     * of the first POM and the properties of the chain, the ones of a POM overriding the ones of its parents
+     */
+    private static Map<String, String> chainProperties(List<Model> chain) {
+        Map<String, String> properties = new HashMap<String, String>();
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            for (String name : chain.get(i).getProperties().stringPropertyNames()) {
+                properties.put(name, chain.get(i).getProperties().getProperty(name));
+            }
+        }
+        Model model = chain.get(0);
+        Parent parent = model.getParent();
+        Map<String, String> modelValues = new HashMap<String, String>();
+        modelValues.put("groupId", model.getGroupId() != null || parent == null ? model.getGroupId() : parent.getGroupId());
+        modelValues.put("artifactId", model.getArtifactId());
+        modelValues.put("version", model.getVersion() != null || parent == null ? model.getVersion() : parent.getVersion());
+        if (parent != null) {
+            modelValues.put("parent.groupId", parent.getGroupId());
+            modelValues.put("parent.artifactId", parent.getArtifactId());
+            modelValues.put("parent.version", parent.getVersion());
+        }
+        for (Map.Entry<String, String> value : modelValues.entrySet()) {
+            if (value.getValue() != null) {
+                properties.put("project." + value.getKey(), value.getValue());
+                properties.put("pom." + value.getKey(), value.getValue());
+                if (!properties.containsKey(value.getKey())) {
+                    properties.put(value.getKey(), value.getValue());
+                }
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * @return the value with its expressions resolved from the given properties, then the system and environment ones,
+     * {@code null} if one can't be resolved
+     */
+    private static String interpolate(String value, Map<String, String> properties, int depth) {
+        if (value == null || depth > 10) {
+            return null;
+        }
+        Matcher matcher = PROPERTY_REFERENCE.matcher(value);
+        StringBuffer result = new StringBuffer();
+        while (matcher.find()) {
+            String resolved = properties.get(matcher.group(1));
+            if (resolved == null) {
+                resolved = propertyValue(matcher.group(1));
+            }
+            resolved = interpolate(resolved, properties, depth + 1);
+            if (resolved == null) {
+                return null;
+            }
+            matcher.appendReplacement(result, Matcher.quoteReplacement(resolved));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    /**
+     * @return the local repository set by {@code maven.repo.local} or the settings, {@code ~/.m2/repository} by default
+     */
+    private File localRepository() {
+        if (localRepository == null) {
+            String path = System.getProperty("maven.repo.local");
+            for (int i = 0; path == null && i < settingsFiles.length; i++) {
+                path = interpolate(settingsLocalRepository(settingsFiles[i]), Collections.<String, String>emptyMap(), 0);
+            }
+            localRepository = path != null ? new File(path) : new File(System.getProperty("user.home"), ".m2/repository");
+        }
+        return localRepository;
+    }
+
+    private static String settingsLocalRepository(File settingsFile) {
+        if (!settingsFile.isFile()) {
+            return null;
+        }
+        try {
+            Reader settingsReader = ReaderFactory.newXmlReader(settingsFile);
+            try {
+                Settings settings = new SettingsXpp3Reader().read(settingsReader, false);
+                return settings.getLocalRepository() == null || settings.getLocalRepository().trim().length() == 0
+                        ? null : settings.getLocalRepository().trim();
+            } finally {
+                settingsReader.close();
+            }
+        } catch (IOException e) {
+            return null; //the settings file is hashed, the embedder reports it
+        } catch (XmlPullParserException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the JVM and OS properties and the system and environment properties referenced by the given POM or settings text,
+     * with their current values, {@code null} for the unset ones
+     */
+    private static SortedMap<String, String> environment(CharSequence text) {
+        SortedMap<String, String> environment = new TreeMap<String, String>();
+        for (String property : ALWAYS_HASHED_PROPERTIES) {
+            environment.put(property, System.getProperty(property));
+        }
+        for (String property : referencedProperties(text)) {
+            environment.put(property, propertyValue(property));
+        }
+        return environment;
+    }
+
+    private static Set<String> referencedProperties(CharSequence text) {
+        Set<String> properties = new TreeSet<String>();
+        Matcher matcher = PROPERTY_REFERENCE.matcher(text);
+        while (matcher.find()) {
+            properties.add(matcher.group(1));
+        }
+        return properties;
+    }
+
+    private static String propertyValue(String property) {
+        if (property.startsWith(ENV_PREFIX)) {
+            return System.getenv(property.substring(ENV_PREFIX.length()));
+        }
+        return System.getProperty(property);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void digestString(MessageDigest digest, String value) throws UnsupportedEncodingException {
+        digest.update(value.getBytes("UTF-8"));
+        digest.update((byte) 0);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -1,5 +1,7 @@
 package org.gradle.plugin.maven;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import static com.google.common.collect.ImmutableMap.of;
 
@@ -7,6 +9,8 @@ class ObjectConverter {
 
     private static final String JAVA_PLUGIN_NAME = "java";
     private static final String WAR_PLUGIN_NAME = "war";
+    private static final String REGEX_PATTERN_PREFIX = "%regex[";
+    private static final String ANT_PATTERN_PREFIX = "%ant[";
 
     private static final Map<String, String> packagingToPlugin = of(
             "jar", JAVA_PLUGIN_NAME,
@@ -25,4 +29,88 @@ class ObjectConverter {
     public static String scope2Configuration(String scope, String packaging) {
         return scopeToConfigurationAccordingToPackaging.get(scope).get(packaging);
     }
+
+    /**
+     * Splits a command line on whitespace, except within single or double quotes, which are removed.
+     * A quote of one kind is kept as is within quotes of the other kind.
+     */
+    public static List<String> commandLine2Arguments(String commandLine) {
+        List<String> arguments = new ArrayList<String>();
+        StringBuilder argument = new StringBuilder();
+        char quote = 0;
+        for (char c : commandLine.toCharArray()) {
+            if (quote == 0 && (c == '"' || c == '\'')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            } else if (Character.isWhitespace(c) && quote == 0) {
+                if (argument.length() > 0) {
+                    arguments.add(argument.toString());
+                    argument.setLength(0);
+                }
+            } else {
+                argument.append(c);
+            }
+        }
+        if (argument.length() > 0) {
+            arguments.add(argument.toString());
+        }
+        return arguments;
+    }
+
+    /**
+     * @return whether a surefire pattern only selects some methods of the classes, e.g. {@code MyTest#testOne},
+     * Gradle test patterns select whole classes
+     */
+    public static boolean hasMethodFilter(String pattern) {
+        return !pattern.startsWith(REGEX_PATTERN_PREFIX) && pattern.indexOf('#') >= 0;
+    }
+
+    /**
+     * Splits a surefire include or exclude on commas, except within {@code %regex[...]} and {@code %ant[...]} patterns.
+     */
+    public static List<String> splitTestPatterns(String patterns) {
+        List<String> result = new ArrayList<String>();
+        int start = 0;
+        while (start < patterns.length()) {
+            char c = patterns.charAt(start);
+            if (c == ',' || Character.isWhitespace(c)) {
+                start++;
+                continue;
+            }
+            int end;
+            if (patterns.startsWith(REGEX_PATTERN_PREFIX, start) || patterns.startsWith(ANT_PATTERN_PREFIX, start)) {
+                end = patterns.indexOf("],", start);
+                end = end < 0 ? patterns.length() : end + 1;
+            } else {
+                end = patterns.indexOf(',', start);
+                end = end < 0 ? patterns.length() : end;
+            }
+            result.add(patterns.substring(start, end).trim());
+            start = end;
+        }
+        return result;
+    }
+
+    /**
+     * @return the Gradle pattern of the test classes matching a single surefire include or exclude pattern,
+     * {@code null} for regular expressions. Patterns of sources or without extension match the class files.
+     * The {@code #method} filter of a pattern is dropped, see {@link #hasMethodFilter(String)}.
+     */
+    public static String testPattern2Gradle(String pattern) {
+        if (pattern.startsWith(REGEX_PATTERN_PREFIX)) {
+            return null;
+        }
+        if (pattern.startsWith(ANT_PATTERN_PREFIX) && pattern.endsWith("]")) {
+            pattern = pattern.substring(ANT_PATTERN_PREFIX.length(), pattern.length() - 1);
+        }
+        int methodFilter = pattern.indexOf('#');
+        if (methodFilter >= 0) {
+            pattern = methodFilter == 0 ? "**/*" : pattern.substring(0, methodFilter);
+        }
+        if (pattern.endsWith(".java")) {
+            return pattern.substring(0, pattern.length() - ".java".length()) + ".class";
+        }
+        return pattern.endsWith(".class") ? pattern : pattern + ".class";
+    }
 }
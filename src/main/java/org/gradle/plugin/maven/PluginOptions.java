@@ -0,0 +1,92 @@
+package org.gradle.plugin.maven;
+
+import org.gradle.api.Project;
+
+/**
+ * Tuning options of the plugin, read from the root project properties, e.g. {@code -Pm2metadata.threads=8}.
+ */
+class PluginOptions {
+
+    static final String MODEL_BUILDING_THREADS = "m2metadata.threads";
+    static final String LAZY_CONFIGURATION = "m2metadata.lazy";
+    static final String PROFILING = "m2metadata.profile";
+    static final String MIRROR = "m2metadata.mirror";
+    static final String FAST_POM_READER = "m2metadata.fast";
+    static final String GRADLE_BUILD_DIR = "m2metadata.gradleBuildDir";
+    static final String VERIFY_GRADLE_BUILD = "m2metadata.verify";
+
+    private final Project rootProject;
+
+    PluginOptions(Project rootProject) {
+        this.rootProject = rootProject;
+    }
+
+    /**
+     * @return the number of threads building the reactor models, the number of available processors by default
+     */
+    public int getModelBuildingThreads() {
+        return intProperty(MODEL_BUILDING_THREADS, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return whether Maven dependencies are added to a project only when it's needed by the requested tasks
+     * or one of its configurations is resolved, {@code false} by default.
+     * The metadata of every module is read anyway, applying the plugin needs it and the reactor index is built from all of it
+     */
+    public boolean isLazyConfiguration() {
+        return booleanProperty(LAZY_CONFIGURATION, false);
+    }
+
+    /**
+     * @return whether the configuration profile is reported at the end of the build
+     * and written to {@code build/m2metadata} of the root project, {@code false} by default
+     */
+    public boolean isProfiling() {
+        return booleanProperty(PROFILING, false);
+    }
+
+    /**
+     * @return the id of the mirror from the Maven settings all the projects should use as their only repository,
+     * {@code null} by default, i.e. the repositories of the modules with the mirrors applied
+     */
+    public String getMirror() {
+        String value = property(MIRROR);
+        return value == null || value.trim().length() == 0 ? null : value.trim();
+    }
+
+    /**
+     * @return whether the POMs are read by {@link FastPomReader}, falling back to the embedder for the modules
+     * it can't read, {@code false} by default
+     */
+    public boolean isFastPomReader() {
+        return booleanProperty(FAST_POM_READER, false);
+    }
+
+    /**
+     * @return the directory {@link GenerateGradleBuildTask} writes to, relative to the root project, {@code null} by default
+     */
+    public String getGradleBuildDir() {
+        return property(GRADLE_BUILD_DIR);
+    }
+
+    /**
+     * @return whether {@link GenerateGradleBuildTask} checks the generated build instead of writing it, {@code false} by default
+     */
+    public boolean isVerifyGradleBuild() {
+        return booleanProperty(VERIFY_GRADLE_BUILD, false);
+    }
+
+    private boolean booleanProperty(String name, boolean defaultValue) {
+        String value = property(name);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    private int intProperty(String name, int defaultValue) {
+        String value = property(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private String property(String name) {
+        return rootProject.hasProperty(name) ? String.valueOf(rootProject.property(name)) : null;
+    }
+}
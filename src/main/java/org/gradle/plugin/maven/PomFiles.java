@@ -0,0 +1,79 @@
+package org.gradle.plugin.maven;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+import java.io.*;
+
+/**
+ * Navigation between POM files on disk and in the local repository by their raw, not interpolated, models.
+ */
+class PomFiles {
+
+    public static final String POM_FILE_NAME = "pom.xml";
+    private static final String DEFAULT_PARENT_RELATIVE_PATH = "../pom.xml";
+
+    private PomFiles() {
+    }
+
+    public static Model readRawModel(File pom) throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(pom), "UTF-8"));
+        try {
+            return new MavenXpp3Reader().read(reader, false);
+        } catch (XmlPullParserException e) {
+            throw new IOException("can't parse " + pom + ": " + e.getMessage());
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return the canonical parent POM file of the given model if it's on disk, {@code null} if it has no parent or it's a remote one
+     */
+    public static File localParentPom(File pom, Model model) throws IOException {
+        Parent parent = model.getParent();
+        if (parent == null) {
+            return null;
+        }
+        return localParentPom(pom, parent.getRelativePath());
+    }
+
+    /**
+     * @param relativePath the {@code relativePath} of the parent as written, {@code null} if it's not
+     * @return the canonical parent POM file if it's on disk, {@code null} if it's a remote one
+     */
+    public static File localParentPom(File pom, String relativePath) throws IOException {
+        if (relativePath == null) {
+            relativePath = DEFAULT_PARENT_RELATIVE_PATH;
+        }
+        if (relativePath.length() == 0) {
+            return null;
+        }
+        File parentPom = pomFile(new File(pom.getParentFile(), relativePath));
+        return parentPom.isFile() ? parentPom.getCanonicalFile() : null;
+    }
+
+    /**
+     * @return the canonical POM file of a {@code <module>} declared by the given POM
+     */
+    public static File modulePom(File pom, String module) throws IOException {
+        return pomFile(new File(pom.getParentFile(), module)).getCanonicalFile();
+    }
+
+    /**
+     * @return the canonical POM file of the given artifact in the local repository, {@code null} if it isn't there
+     */
+    public static File repositoryPom(File localRepository, String groupId, String artifactId, String version) throws IOException {
+        if (groupId == null || artifactId == null || version == null) {
+            return null;
+        }
+        File pom = new File(localRepository, groupId.replace('.', '/') + '/' + artifactId + '/' + version + '/' + artifactId + '-' + version + ".pom");
+        return pom.isFile() ? pom.getCanonicalFile() : null;
+    }
+
+    private static File pomFile(File file) {
+        return file.isDirectory() ? new File(file, POM_FILE_NAME) : file;
+    }
+}
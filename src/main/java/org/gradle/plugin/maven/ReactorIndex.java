@@ -0,0 +1,80 @@
+package org.gradle.plugin.maven;
+
+import org.gradle.api.Project;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Build-scoped lookup of the Gradle project built from a reactor module, by the module's coordinates.
+ * Modules are matched to projects by canonical project directory once, when the index is built,
+ * so a lookup doesn't allocate and doesn't scan the project tree.
+ */
+class ReactorIndex {
+
+    private final Map<String, List<Entry>> entriesByArtifactId;
+
+    private ReactorIndex(Map<String, List<Entry>> entriesByArtifactId) {
+        this.entriesByArtifactId = entriesByArtifactId;
+    }
+
+    public static ReactorIndex build(Iterable<ModuleMetadata> modules, Iterable<Project> projects) throws IOException {
+        Map<File, Project> projectsByDir = new HashMap<File, Project>();
+        for (Project project : projects) {
+            projectsByDir.put(project.getProjectDir().getCanonicalFile(), project);
+        }
+        Map<String, List<Entry>> entriesByArtifactId = new HashMap<String, List<Entry>>();
+        for (ModuleMetadata module : modules) {
+            Project project = projectsByDir.get(module.getBasedir().getCanonicalFile());
+            if (project != null) {
+                List<Entry> entries = entriesByArtifactId.get(module.getArtifactId());
+                if (entries == null) {
+                    entries = new ArrayList<Entry>(1);
+                    entriesByArtifactId.put(module.getArtifactId(), entries);
+                }
+                entries.add(new Entry(module, project));
+            }
+        }
+        return new ReactorIndex(entriesByArtifactId);
+    }
+
+    /**
+     * @return the Gradle project of the reactor module with the given coordinates, or {@code null} if it's not a reactor module
+     */
+    public Project findProject(String groupId, String artifactId, String version) {
+        Entry entry = find(groupId, artifactId, version);
+        return entry == null ? null : entry.project;
+    }
+
+    /**
+     * @return the reactor module with the given coordinates, or {@code null} if it's not a reactor module
+     */
+    public ModuleMetadata findModule(String groupId, String artifactId, String version) {
+        Entry entry = find(groupId, artifactId, version);
+        return entry == null ? null : entry.module;
+    }
+
+    private Entry find(String groupId, String artifactId, String version) {
+        List<Entry> entries = entriesByArtifactId.get(artifactId);
+        if (entries != null) {
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                if (entry.module.getGroupId().equals(groupId) && entry.module.getVersion().equals(version)) {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static class Entry {
+        private final ModuleMetadata module;
+        private final Project project;
+
+        private Entry(ModuleMetadata module, Project project) {
+            this.module = module;
+            this.project = project;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.gradle.plugin.maven;
+
+import org.apache.maven.settings.Mirror;
+import org.gradle.plugin.maven.ModuleMetadata.ModuleRepository;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@code <mirrors>} of the Maven settings, replacing the repositories they are a mirror of the way Maven does:
+ * a mirror of the exact repository id wins, then the first mirror whose {@code mirrorOf} pattern matches.
+ * Patterns are {@code *}, {@code external:*} (anything but localhost and file repositories), repository ids
+ * and comma separated lists of them, where {@code !id} excludes a repository.
+ */
+class RepositoryMirrors {
+
+    private static final String WILDCARD = "*";
+    private static final String EXTERNAL_WILDCARD = "external:*";
+
+    private final List<Mirror> mirrors;
+
+    RepositoryMirrors(List<Mirror> mirrors) {
+        this.mirrors = mirrors == null ? Collections.<Mirror>emptyList() : new ArrayList<Mirror>(mirrors);
+    }
+
+    /**
+     * @return the repositories with the mirrored ones replaced by their mirrors, without duplicate URLs
+     */
+    public List<ModuleRepository> apply(List<ModuleRepository> repositories) {
+        List<ModuleRepository> result = new ArrayList<ModuleRepository>(repositories.size());
+        List<String> urls = new ArrayList<String>(repositories.size());
+        for (ModuleRepository repository : repositories) {
+            ModuleRepository mirrored = apply(repository);
+            String url = RepositoryRegistry.normalizeUrl(mirrored.getUrl());
+            if (!urls.contains(url)) {
+                urls.add(url);
+                result.add(mirrored);
+            }
+        }
+        return result;
+    }
+
+    public ModuleRepository apply(ModuleRepository repository) {
+        Mirror mirror = findMirror(repository);
+        return mirror == null ? repository : new ModuleRepository(mirror.getId(), mirror.getUrl());
+    }
+
+    /**
+     * @return the mirror with the given id as a repository, or {@code null} if the settings don't declare it
+     */
+    public ModuleRepository getMirror(String id) {
+        for (Mirror mirror : mirrors) {
+            if (id.equals(mirror.getId())) {
+                return new ModuleRepository(mirror.getId(), mirror.getUrl());
+            }
+        }
+        return null;
+    }
+
+    private Mirror findMirror(ModuleRepository repository) {
+        for (Mirror mirror : mirrors) {
+            if (repository.getId().equals(mirror.getMirrorOf())) {
+                return mirror;
+            }
+        }
+        for (Mirror mirror : mirrors) {
+            if (matches(repository, mirror.getMirrorOf())) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(ModuleRepository repository, String mirrorOf) {
+        if (mirrorOf == null) {
+            return false;
+        }
+        boolean matches = false;
+        for (String pattern : mirrorOf.split(",")) {
+            pattern = pattern.trim();
+            if (pattern.length() > 1 && pattern.startsWith("!")) {
+                if (pattern.substring(1).equals(repository.getId())) {
+                    return false;
+                }
+            } else if (pattern.equals(repository.getId()) || pattern.equals(WILDCARD)
+                    || (pattern.equals(EXTERNAL_WILDCARD) && isExternal(repository))) {
+                matches = true;
+            }
+        }
+        return matches;
+    }
+
+    private static boolean isExternal(ModuleRepository repository) {
+        try {
+            URI uri = new URI(repository.getUrl().trim());
+            String host = uri.getHost();
+            return !"file".equalsIgnoreCase(uri.getScheme()) && !"localhost".equalsIgnoreCase(host) && !"127.0.0.1".equals(host);
+        } catch (URISyntaxException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.gradle.plugin.maven;
+
+import org.gradle.plugin.maven.ModuleMetadata.ModuleRepository;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.*;
+
+/**
+ * Build-wide registry of the repositories declared by the modules, keyed by normalized URL.
+ * Every URL gets one repository, named after the first module declaring it, so all the projects
+ * share the same repository names and no project declares a URL twice. Ids reused for other URLs get a numeric suffix.
+ */
+class RepositoryRegistry {
+
+    private final Map<String, ModuleRepository> repositoriesByUrl = new LinkedHashMap<String, ModuleRepository>();
+    private final Set<String> names = new HashSet<String>();
+
+    /**
+     * @return the registered repositories of the given ones, in the given order, without duplicate URLs
+     */
+    public List<ModuleRepository> register(List<ModuleRepository> repositories) {
+        Set<ModuleRepository> result = new LinkedHashSet<ModuleRepository>();
+        for (ModuleRepository repository : repositories) {
+            result.add(register(repository));
+        }
+        return new ArrayList<ModuleRepository>(result);
+    }
+
+    public ModuleRepository register(ModuleRepository repository) {
+        String url = normalizeUrl(repository.getUrl());
+        ModuleRepository registered = repositoriesByUrl.get(url);
+        if (registered == null) {
+            String name = repository.getId();
+            for (int i = 2; names.contains(name); i++) {
+                name = repository.getId() + '-' + i;
+            }
+            names.add(name);
+            registered = new ModuleRepository(name, repository.getUrl());
+            repositoriesByUrl.put(url, registered);
+        }
+        return registered;
+    }
+
+    /**
+     * @return the URL without surrounding whitespace and trailing slashes, with lower case scheme and host and without the default port
+     */
+    static String normalizeUrl(String url) {
+        String normalized = url.trim();
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        try {
+            URI uri = new URI(normalized);
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                return normalized;
+            }
+            String scheme = uri.getScheme().toLowerCase(Locale.ENGLISH);
+            int port = uri.getPort();
+            if ((port == 80 && scheme.equals("http")) || (port == 443 && scheme.equals("https"))) {
+                port = -1;
+            }
+            StringBuilder result = new StringBuilder(scheme).append("://");
+            if (uri.getRawUserInfo() != null) {
+                result.append(uri.getRawUserInfo()).append('@');
+            }
+            result.append(uri.getHost().toLowerCase(Locale.ENGLISH));
+            if (port != -1) {
+                result.append(':').append(port);
+            }
+            if (uri.getRawPath() != null) {
+                result.append(uri.getRawPath());
+            }
+            if (uri.getRawQuery() != null) {
+                result.append('?').append(uri.getRawQuery());
+            }
+            return result.toString();
+        } catch (URISyntaxException e) {
+            return normalized;
+        }
+    }
+}
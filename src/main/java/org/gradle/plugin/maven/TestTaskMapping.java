@@ -0,0 +1,189 @@
+package org.gradle.plugin.maven;
+
+import org.gradle.api.tasks.testing.Test;
+import org.gradle.plugin.maven.ModuleMetadata.ModuleTestSettings;
+
+import java.util.*;
+
+/**
+ * The settings of a Gradle test task matching the maven-surefire-plugin configuration of a module.
+ * Surefire forks map onto parallel test processes: {@code forkCount}, else {@code forkMode},
+ * else the {@code threadCount} of {@code parallel} runs, limited to the number of processors.
+ * Forks which aren't reused start a process per test class. Heap settings of {@code argLine} set the heap size
+ * of the test processes, the other arguments are passed on.
+ */
+class TestTaskMapping {
+
+    private final Float forks;
+    private final boolean forksPerProcessor;
+    private final boolean forksLimitedByProcessors;
+    private final boolean forkPerTest;
+    private final String maxHeapSize;
+    private final String minHeapSize;
+    private final List<String> jvmArgs = new ArrayList<String>();
+    private final List<String> includes = new ArrayList<String>();
+    private final List<String> excludes = new ArrayList<String>();
+    private final Map<String, String> systemProperties;
+    private final List<String> warnings = new ArrayList<String>();
+
+    TestTaskMapping(ModuleTestSettings settings) {
+        Float forkCount = null;
+        boolean perProcessor = false;
+        boolean limitedByProcessors = false;
+        boolean perTest = "false".equalsIgnoreCase(settings.getReuseForks());
+        try {
+            if (settings.getForkCount() != null) {
+                String value = settings.getForkCount().trim();
+                perProcessor = value.endsWith("C") || value.endsWith("c");
+                forkCount = perProcessor ? Float.parseFloat(value.substring(0, value.length() - 1)) : (float) Integer.parseInt(value);
+            } else if (settings.getForkMode() != null) {
+                String forkMode = settings.getForkMode();
+                perTest |= forkMode.equals("always") || forkMode.equals("pertest");
+                if (forkMode.equals("perthread") && settings.getThreadCount() != null) {
+                    forkCount = (float) Integer.parseInt(settings.getThreadCount());
+                }
+            } else if (settings.getParallel() != null && settings.getThreadCount() != null) {
+                forkCount = (float) Integer.parseInt(settings.getThreadCount());
+                limitedByProcessors = true;
+            }
+        } catch (NumberFormatException e) {
+            warnings.add("Ignoring surefire fork settings: " + e.getMessage());
+            forkCount = null;
+        }
+        this.forks = forkCount;
+        this.forksPerProcessor = perProcessor;
+        this.forksLimitedByProcessors = limitedByProcessors;
+        this.forkPerTest = perTest;
+
+        String maxHeap = null;
+        String minHeap = null;
+        if (settings.getArgLine() != null) {
+            for (String argument : ObjectConverter.commandLine2Arguments(settings.getArgLine())) {
+                if (argument.startsWith("-Xmx")) {
+                    maxHeap = argument.substring("-Xmx".length());
+                } else if (argument.startsWith("-Xms")) {
+                    minHeap = argument.substring("-Xms".length());
+                } else if (!argument.contains("${") && !argument.contains("@{")) {
+                    jvmArgs.add(argument);
+                }
+            }
+        }
+        this.maxHeapSize = maxHeap;
+        this.minHeapSize = minHeap;
+        addPatterns(settings.getIncludes(), includes, false);
+        addPatterns(settings.getExcludes(), excludes, true);
+        this.systemProperties = settings.getSystemProperties();
+    }
+
+    /**
+     * @param exclude whether the patterns are excludes, an exclude filtering methods would exclude whole classes, it's ignored
+     */
+    private void addPatterns(List<String> surefirePatterns, List<String> patterns, boolean exclude) {
+        for (String surefirePatternList : surefirePatterns) {
+            for (String surefirePattern : ObjectConverter.splitTestPatterns(surefirePatternList)) {
+                String pattern = ObjectConverter.testPattern2Gradle(surefirePattern);
+                if (pattern == null) {
+                    warnings.add("Ignoring surefire pattern " + surefirePattern + ", regular expressions aren't supported");
+                } else if (ObjectConverter.hasMethodFilter(surefirePattern) && exclude) {
+                    warnings.add("Ignoring surefire exclude " + surefirePattern + ", Gradle can't exclude single test methods");
+                } else {
+                    if (ObjectConverter.hasMethodFilter(surefirePattern)) {
+                        warnings.add("Including all the methods of " + pattern + " for surefire pattern " + surefirePattern
+                                + ", Gradle can't include single test methods");
+                    }
+                    patterns.add(pattern);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of parallel test processes, {@code null} if surefire doesn't set it
+     */
+    public Integer getMaxParallelForks(int processors) {
+        if (forks == null) {
+            return null;
+        }
+        int count = forksPerProcessor ? (int) (forks * processors) : forks.intValue();
+        return Math.max(forksLimitedByProcessors ? Math.min(count, processors) : count, 1);
+    }
+
+    /**
+     * @return {@link #getMaxParallelForks(int)} as a Groovy expression evaluated on the machine running the build
+     */
+    public String getMaxParallelForksExpression() {
+        if (forks == null) {
+            return null;
+        }
+        if (forksPerProcessor) {
+            return "Math.max((int) (" + forks + "f * Runtime.runtime.availableProcessors()), 1)";
+        }
+        if (forksLimitedByProcessors) {
+            return "Math.max(Math.min(" + forks.intValue() + ", Runtime.runtime.availableProcessors()), 1)";
+        }
+        return String.valueOf(Math.max(forks.intValue(), 1));
+    }
+
+    public boolean isForkPerTest() {
+        return forkPerTest;
+    }
+
+    public String getMaxHeapSize() {
+        return maxHeapSize;
+    }
+
+    public String getMinHeapSize() {
+        return minHeapSize;
+    }
+
+    public List<String> getJvmArgs() {
+        return jvmArgs;
+    }
+
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    public Map<String, String> getSystemProperties() {
+        return systemProperties;
+    }
+
+    /**
+     * @return the surefire settings which couldn't be mapped
+     */
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    public void applyTo(Test test) {
+        Integer maxParallelForks = getMaxParallelForks(Runtime.getRuntime().availableProcessors());
+        if (maxParallelForks != null) {
+            test.setMaxParallelForks(maxParallelForks);
+        }
+        if (forkPerTest) {
+            test.setForkEvery(1L);
+        }
+        if (maxHeapSize != null) {
+            test.setMaxHeapSize(maxHeapSize);
+        }
+        if (minHeapSize != null) {
+            test.setMinHeapSize(minHeapSize);
+        }
+        if (!jvmArgs.isEmpty()) {
+            test.jvmArgs(jvmArgs.toArray());
+        }
+        for (String include : includes) {
+            test.include(include);
+        }
+        for (String exclude : excludes) {
+            test.exclude(exclude);
+        }
+        for (Map.Entry<String, String> property : systemProperties.entrySet()) {
+            test.systemProperty(property.getKey(), property.getValue());
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.gradle.plugin.maven;
+
+import com.google.common.io.Files;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionRequestPopulator;
+import org.apache.maven.model.building.ModelBuildingRequest;
+import org.apache.maven.project.ProjectBuilder;
+import org.apache.maven.project.ProjectBuildingRequest;
+import org.apache.maven.settings.Settings;
+import org.codehaus.plexus.DefaultContainerConfiguration;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.classworlds.ClassWorld;
+import org.gradle.plugin.maven.ModuleMetadata.ModuleDependency;
+import org.gradle.plugin.maven.ModuleMetadata.ModuleExclusion;
+import org.gradle.plugin.maven.ModuleMetadata.ModuleRepository;
+import org.gradle.plugin.maven.ModuleMetadata.ModuleTestSettings;
+import org.junit.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reads POMs with {@link FastPomReader} and with the Maven embedder, offline, and expects the same metadata.
+ */
+public class FastPomReaderTest {
+
+    private static DefaultPlexusContainer container;
+    private static ProjectBuilder builder;
+    private static ProjectBuildingRequest buildingRequest;
+
+    private File rootDir;
+
+    @BeforeClass
+    public static void startEmbedder() throws Exception {
+        container = new DefaultPlexusContainer(new DefaultContainerConfiguration()
+                .setClassWorld(new ClassWorld("plexus.core", FastPomReaderTest.class.getClassLoader()))
+                .setName("mavenCore"));
+        builder = container.lookup(ProjectBuilder.class);
+        Settings settings = new Settings();
+        settings.setOffline(true);
+        MavenExecutionRequest executionRequest = new DefaultMavenExecutionRequest();
+        MavenExecutionRequestPopulator populator = container.lookup(MavenExecutionRequestPopulator.class);
+        populator.populateFromSettings(executionRequest, settings);
+        populator.populateDefaults(executionRequest);
+        buildingRequest = executionRequest.getProjectBuildingRequest();
+        buildingRequest.setValidationLevel(ModelBuildingRequest.VALIDATION_LEVEL_MINIMAL);
+    }
+
+    @AfterClass
+    public static void stopEmbedder() {
+        container.dispose();
+    }
+
+    @Before
+    public void createRootDir() throws IOException {
+        rootDir = Files.createTempDir().getCanonicalFile();
+    }
+
+    @After
+    public void deleteRootDir() throws IOException {
+        Files.deleteRecursively(rootDir);
+    }
+
+    @Test
+    public void inheritedDependenciesMergeOnTheKeyAsWritten() throws Exception {
+        writeParent("<dependencies>" + dependency("log", "${project.artifactId}-log", "1", null) + "</dependencies>");
+        File child = writeChild("c", "<dependencies>" + dependency("log", "c-log", "2", "provided") + "</dependencies>");
+        ModuleMetadata module = assertSameAsEmbedder(child);
+        assertEquals(2, module.getDependencies().size());
+    }
+
+    @Test
+    public void childDependencyOverridesTheSameKeyAsWritten() throws Exception {
+        writeParent("<dependencies>" + dependency("log", "${project.artifactId}-log", "1", null) + "</dependencies>");
+        File child = writeChild("c", "<dependencies>" + dependency("log", "${project.artifactId}-log", "2", "provided") + "</dependencies>");
+        ModuleMetadata module = assertSameAsEmbedder(child);
+        assertEquals(1, module.getDependencies().size());
+        assertEquals("2", module.getDependencies().get(0).getVersion());
+    }
+
+    @Test(expected = FastPomReader.UnsupportedPomException.class)
+    public void managedDependenciesCollidingAfterInterpolationAreUnsupported() throws Exception {
+        writeParent("<dependencyManagement><dependencies>" + dependency("log", "${project.artifactId}-log", "1", null)
+                + "</dependencies></dependencyManagement>");
+        File child = writeChild("c", "<dependencyManagement><dependencies>" + dependency("log", "c-log", "2", null)
+                + "</dependencies></dependencyManagement><dependencies>" + dependency("log", "c-log", null, null) + "</dependencies>");
+        new FastPomReader(noSettings()).read(child);
+    }
+
+    @Test
+    public void managedVersionScopeAndExclusions() throws Exception {
+        writeParent("<dependencyManagement><dependencies>"
+                + "<dependency><groupId>lib</groupId><artifactId>core</artifactId><version>${core.version}</version><scope>test</scope>"
+                + "<exclusions><exclusion><groupId>x</groupId><artifactId>y</artifactId></exclusion></exclusions></dependency>"
+                + "</dependencies></dependencyManagement><properties><core.version>3.1</core.version></properties>");
+        File child = writeChild("c", "<dependencies>" + dependency("lib", "core", null, null) + "</dependencies>");
+        assertSameAsEmbedder(child);
+    }
+
+    @Test
+    public void packagingFromAProperty() throws Exception {
+        writeParent("<properties><module.packaging>war</module.packaging></properties>");
+        File child = writeChild("c", "<packaging>${module.packaging}</packaging>");
+        assertEquals("war", assertSameAsEmbedder(child).getPackaging());
+    }
+
+    @Test
+    public void prefixedModelValuesBeforePropertiesUnprefixedAfter() throws Exception {
+        writeParent("<properties><version>from-property</version><project.version>from-property</project.version></properties>");
+        File child = writeChild("c", "<dependencies>" + dependency("a", "prefixed", "${project.version}", null)
+                + dependency("a", "unprefixed", "${version}", null) + dependency("a", "basedir", "${basedir}", null) + "</dependencies>");
+        ModuleMetadata module = assertSameAsEmbedder(child);
+        assertEquals("1.0", module.getDependencies().get(0).getVersion());
+        assertEquals("from-property", module.getDependencies().get(1).getVersion());
+    }
+
+    @Test
+    public void childPropertiesOverrideParentOnes() throws Exception {
+        writeParent("<properties><lib.version>1</lib.version></properties><dependencies>" + dependency("lib", "a", "${lib.version}", null) + "</dependencies>");
+        File child = writeChild("c", "<properties><lib.version>2</lib.version></properties>");
+        assertEquals("2", assertSameAsEmbedder(child).getDependencies().get(0).getVersion());
+    }
+
+    @Test
+    public void surefireConfigurationMergedWithPluginManagement() throws Exception {
+        writeParent("<properties><forks>2</forks></properties><build><pluginManagement><plugins><plugin>"
+                + "<groupId>org.apache.maven.plugins</groupId><artifactId>maven-surefire-plugin</artifactId><configuration>"
+                + "<forkCount>${forks}</forkCount><reuseForks>false</reuseForks><argLine>-Xmx256m</argLine>"
+                + "<includes><include>**/*Test.java</include></includes>"
+                + "</configuration></plugin></plugins></pluginManagement></build>");
+        File child = writeChild("c", "<build><plugins><plugin>"
+                + "<groupId>org.apache.maven.plugins</groupId><artifactId>maven-surefire-plugin</artifactId><configuration>"
+                + "<argLine>-Xmx512m</argLine><excludes><exclude>**/Slow*</exclude></excludes>"
+                + "<systemPropertyVariables><env>ci</env></systemPropertyVariables>"
+                + "</configuration></plugin></plugins></build>");
+        ModuleTestSettings testSettings = assertSameAsEmbedder(child).getTestSettings();
+        assertEquals("2", testSettings.getForkCount());
+        assertEquals("-Xmx512m", testSettings.getArgLine());
+    }
+
+    @Test
+    public void compilerLevelsAndRepositories() throws Exception {
+        writeParent("<repositories><repository><id>company</id><url>http://repo.example.com/${repo.path}</url></repository></repositories>"
+                + "<properties><repo.path>releases</repo.path><java.level>1.6</java.level></properties>"
+                + "<build><plugins><plugin><groupId>org.apache.maven.plugins</groupId><artifactId>maven-compiler-plugin</artifactId>"
+                + "<configuration><source>${java.level}</source><target>${java.level}</target></configuration></plugin></plugins></build>");
+        File child = writeChild("c", "");
+        assertEquals("1.6", assertSameAsEmbedder(child).getSourceLevel());
+    }
+
+    /**
+     * @return the metadata read by the fast reader, after checking the embedder reads the same
+     */
+    private ModuleMetadata assertSameAsEmbedder(File basedir) throws Exception {
+        ModuleMetadata embedder = ModuleMetadata.from(builder.build(new File(basedir, PomFiles.POM_FILE_NAME), buildingRequest).getProject());
+        ModuleMetadata fast = new FastPomReader(noSettings()).read(basedir);
+        assertEquals(describe(embedder), describe(fast));
+        assertArrayEquals(serialize(embedder), serialize(fast));
+        return fast;
+    }
+
+    private File noSettings() {
+        return new File(rootDir, "settings.xml");
+    }
+
+    private void writeParent(String content) throws IOException {
+        write(rootDir, "<groupId>org.example</groupId><artifactId>parent</artifactId><version>1.0</version><packaging>pom</packaging>" + content);
+    }
+
+    private File writeChild(String artifactId, String content) throws IOException {
+        File basedir = new File(rootDir, artifactId);
+        basedir.mkdirs();
+        write(basedir, "<parent><groupId>org.example</groupId><artifactId>parent</artifactId><version>1.0</version></parent>"
+                + "<artifactId>" + artifactId + "</artifactId>" + content);
+        return basedir;
+    }
+
+    private static void write(File basedir, String content) throws IOException {
+        Files.write("<project><modelVersion>4.0.0</modelVersion>" + content + "</project>",
+                new File(basedir, PomFiles.POM_FILE_NAME), com.google.common.base.Charsets.UTF_8);
+    }
+
+    private static String dependency(String groupId, String artifactId, String version, String scope) {
+        return "<dependency><groupId>" + groupId + "</groupId><artifactId>" + artifactId + "</artifactId>"
+                + (version == null ? "" : "<version>" + version + "</version>")
+                + (scope == null ? "" : "<scope>" + scope + "</scope>") + "</dependency>";
+    }
+
+    private static String describe(ModuleMetadata module) {
+        StringBuilder description = new StringBuilder();
+        description.append(module.getGroupId()).append(':').append(module.getArtifactId()).append(':').append(module.getVersion())
+                .append(':').append(module.getPackaging()).append(" snapshot=").append(module.isSnapshot())
+                .append(" source=").append(module.getSourceLevel()).append(" target=").append(module.getTargetLevel())
+                .append(" sourcePlugin=").append(module.isSourcePluginPresent()).append('\n');
+        for (ModuleRepository repository : module.getRepositories()) {
+            description.append("repository ").append(repository.getId()).append(' ').append(repository.getUrl()).append('\n');
+        }
+        for (ModuleDependency dependency : module.getDependencies()) {
+            description.append("dependency ").append(dependency.getGroupId()).append(':').append(dependency.getArtifactId())
+                    .append(':').append(dependency.getVersion()).append(':').append(dependency.getScope());
+            for (ModuleExclusion exclusion : dependency.getExclusions()) {
+                description.append(" -").append(exclusion.getGroupId()).append(':').append(exclusion.getArtifactId());
+            }
+            description.append('\n');
+        }
+        ModuleTestSettings testSettings = module.getTestSettings();
+        description.append("tests forkCount=").append(testSettings.getForkCount()).append(" forkMode=").append(testSettings.getForkMode())
+                .append(" reuseForks=").append(testSettings.getReuseForks()).append(" parallel=").append(testSettings.getParallel())
+                .append(" threadCount=").append(testSettings.getThreadCount()).append(" argLine=").append(testSettings.getArgLine())
+                .append(" includes=").append(testSettings.getIncludes()).append(" excludes=").append(testSettings.getExcludes())
+                .append(" systemProperties=").append(testSettings.getSystemProperties());
+        return description.toString();
+    }
+
+    private static byte[] serialize(ModuleMetadata module) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        module.writeTo(out);
+        out.close();
+        return bytes.toByteArray();
+    }
+}
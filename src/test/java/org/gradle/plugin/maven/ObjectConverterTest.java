@@ -0,0 +1,53 @@
+package org.gradle.plugin.maven;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ObjectConverterTest {
+
+    @Test
+    public void commandLineSplitsOnWhitespace() {
+        assertEquals(Arrays.asList("-Xmx512m", "-ea"), ObjectConverter.commandLine2Arguments("  -Xmx512m \t -ea  "));
+        assertEquals(Collections.<String>emptyList(), ObjectConverter.commandLine2Arguments(""));
+    }
+
+    @Test
+    public void commandLineKeepsQuotedWhitespace() {
+        assertEquals(Arrays.asList("-Dx=a b", "-ea"), ObjectConverter.commandLine2Arguments("-Dx=\"a b\" -ea"));
+        assertEquals(Arrays.asList("-Dx=a b", "-ea"), ObjectConverter.commandLine2Arguments("-Dx='a b' -ea"));
+    }
+
+    @Test
+    public void commandLineKeepsQuotesOfTheOtherKind() {
+        assertEquals(Arrays.asList("-Dx=it's", "-Dy=say \"hi\""), ObjectConverter.commandLine2Arguments("-Dx=\"it's\" '-Dy=say \"hi\"'"));
+    }
+
+    @Test
+    public void testPatternsSplitOnCommasOutsideRegexAndAnt() {
+        assertEquals(Arrays.asList("**/*Test", "**/IT*.java", "%regex[.*(A|B){1,2}Test.*]", "%ant[**/Foo*]"),
+                ObjectConverter.splitTestPatterns("**/*Test, **/IT*.java,%regex[.*(A|B){1,2}Test.*], %ant[**/Foo*]"));
+    }
+
+    @Test
+    public void testPatternsMatchClassFiles() {
+        assertEquals("**/*Test.class", ObjectConverter.testPattern2Gradle("**/*Test.java"));
+        assertEquals("**/*Test.class", ObjectConverter.testPattern2Gradle("**/*Test"));
+        assertEquals("**/Bar.class", ObjectConverter.testPattern2Gradle("**/Bar.class"));
+        assertEquals("**/Foo*.class", ObjectConverter.testPattern2Gradle("%ant[**/Foo*]"));
+        assertNull(ObjectConverter.testPattern2Gradle("%regex[.*Test.*]"));
+    }
+
+    @Test
+    public void testPatternsDropMethodFilters() {
+        assertTrue(ObjectConverter.hasMethodFilter("MyTest#testOne"));
+        assertEquals("MyTest.class", ObjectConverter.testPattern2Gradle("MyTest#testOne"));
+        assertEquals("**/My*Test.class", ObjectConverter.testPattern2Gradle("**/My*Test.java#test*+other"));
+        assertEquals("**/*.class", ObjectConverter.testPattern2Gradle("#testOne"));
+        assertFalse(ObjectConverter.hasMethodFilter("**/*Test.java"));
+        assertFalse(ObjectConverter.hasMethodFilter("%regex[.*Test#one]"));
+    }
+}
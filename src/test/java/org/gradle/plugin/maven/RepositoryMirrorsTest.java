@@ -0,0 +1,100 @@
+package org.gradle.plugin.maven;
+
+import org.apache.maven.settings.Mirror;
+import org.gradle.plugin.maven.ModuleMetadata.ModuleRepository;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RepositoryMirrorsTest {
+
+    private static final ModuleRepository CENTRAL = new ModuleRepository("central", "http://repo1.maven.org/maven2");
+    private static final ModuleRepository CODEHAUS = new ModuleRepository("codehaus", "http://repository.codehaus.org");
+    private static final ModuleRepository LOCALHOST = new ModuleRepository("local-nexus", "http://localhost:8081/nexus/content/groups/public");
+    private static final ModuleRepository FILE = new ModuleRepository("file-repo", "file:///var/repo");
+
+    @Test
+    public void wildcardMirrorsEveryRepository() {
+        RepositoryMirrors mirrors = mirrors(mirror("all", "*"));
+        assertEquals("all", mirrors.apply(CENTRAL).getId());
+        assertEquals("all", mirrors.apply(LOCALHOST).getId());
+        assertEquals("all", mirrors.apply(FILE).getId());
+    }
+
+    @Test
+    public void externalWildcardSkipsLocalhostAndFileRepositories() {
+        RepositoryMirrors mirrors = mirrors(mirror("external", "external:*"));
+        assertEquals("external", mirrors.apply(CENTRAL).getId());
+        assertSame(LOCALHOST, mirrors.apply(LOCALHOST));
+        assertSame(FILE, mirrors.apply(FILE));
+    }
+
+    @Test
+    public void listMirrorsOnlyTheListedRepositories() {
+        RepositoryMirrors mirrors = mirrors(mirror("some", "central, codehaus"));
+        assertEquals("some", mirrors.apply(CENTRAL).getId());
+        assertEquals("some", mirrors.apply(CODEHAUS).getId());
+        assertSame(LOCALHOST, mirrors.apply(LOCALHOST));
+    }
+
+    @Test
+    public void exclusionWinsOverWildcard() {
+        RepositoryMirrors mirrors = mirrors(mirror("most", "*,!codehaus"));
+        assertEquals("most", mirrors.apply(CENTRAL).getId());
+        assertSame(CODEHAUS, mirrors.apply(CODEHAUS));
+    }
+
+    @Test
+    public void exactIdWinsOverEarlierPattern() {
+        RepositoryMirrors mirrors = mirrors(mirror("all", "*"), mirror("central-mirror", "central"));
+        assertEquals("central-mirror", mirrors.apply(CENTRAL).getId());
+        assertEquals("all", mirrors.apply(CODEHAUS).getId());
+    }
+
+    @Test
+    public void firstMatchingPatternWins() {
+        RepositoryMirrors mirrors = mirrors(mirror("first", "external:*"), mirror("second", "*"));
+        assertEquals("first", mirrors.apply(CENTRAL).getId());
+        assertEquals("second", mirrors.apply(LOCALHOST).getId());
+    }
+
+    @Test
+    public void mirroredRepositoriesAreDeduplicatedByUrl() {
+        RepositoryMirrors mirrors = mirrors(mirror("all", "external:*"));
+        List<ModuleRepository> repositories = mirrors.apply(Arrays.asList(CENTRAL, CODEHAUS, LOCALHOST));
+        assertEquals(2, repositories.size());
+        assertEquals("all", repositories.get(0).getId());
+        assertEquals("http://mirror.example.com/all/", repositories.get(0).getUrl());
+        assertSame(LOCALHOST, repositories.get(1));
+    }
+
+    @Test
+    public void getMirrorLooksUpById() {
+        RepositoryMirrors mirrors = mirrors(mirror("all", "*"));
+        assertEquals("http://mirror.example.com/all/", mirrors.getMirror("all").getUrl());
+        assertNull(mirrors.getMirror("central"));
+    }
+
+    @Test
+    public void noMirrors() {
+        RepositoryMirrors mirrors = new RepositoryMirrors(null);
+        assertSame(CENTRAL, mirrors.apply(CENTRAL));
+        assertEquals(Collections.singletonList(CENTRAL), mirrors.apply(Collections.singletonList(CENTRAL)));
+    }
+
+    private static RepositoryMirrors mirrors(Mirror... mirrors) {
+        return new RepositoryMirrors(Arrays.asList(mirrors));
+    }
+
+    private static Mirror mirror(String id, String mirrorOf) {
+        Mirror mirror = new Mirror();
+        mirror.setId(id);
+        mirror.setMirrorOf(mirrorOf);
+        mirror.setUrl("http://mirror.example.com/" + id + "/");
+        return mirror;
+    }
+}
@@ -0,0 +1,70 @@
+package org.gradle.plugin.maven;
+
+import org.gradle.plugin.maven.ModuleMetadata.ModuleRepository;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RepositoryRegistryTest {
+
+    @Test
+    public void normalizeUrlStripsWhitespaceAndTrailingSlashes() {
+        assertEquals("http://repo1.maven.org/maven2", RepositoryRegistry.normalizeUrl("  http://repo1.maven.org/maven2//  "));
+    }
+
+    @Test
+    public void normalizeUrlLowerCasesSchemeAndHostOnly() {
+        assertEquals("http://repo.example.com/Maven2", RepositoryRegistry.normalizeUrl("HTTP://Repo.Example.COM/Maven2"));
+    }
+
+    @Test
+    public void normalizeUrlDropsDefaultPorts() {
+        assertEquals("http://repo.example.com/maven2", RepositoryRegistry.normalizeUrl("http://repo.example.com:80/maven2"));
+        assertEquals("https://repo.example.com/maven2", RepositoryRegistry.normalizeUrl("https://repo.example.com:443/maven2"));
+        assertEquals("http://repo.example.com:8081/maven2", RepositoryRegistry.normalizeUrl("http://repo.example.com:8081/maven2"));
+        assertEquals("https://repo.example.com:80/maven2", RepositoryRegistry.normalizeUrl("https://repo.example.com:80/maven2"));
+    }
+
+    @Test
+    public void normalizeUrlKeepsUserInfoAndQuery() {
+        assertEquals("http://user@repo.example.com/maven2?a=b", RepositoryRegistry.normalizeUrl("http://user@REPO.example.com/maven2?a=b"));
+    }
+
+    @Test
+    public void normalizeUrlLeavesUrlsWithoutHostAlone() {
+        assertEquals("file:///var/repo", RepositoryRegistry.normalizeUrl("file:///var/repo/"));
+        assertEquals("not a url", RepositoryRegistry.normalizeUrl("not a url"));
+    }
+
+    @Test
+    public void sameUrlGetsTheFirstName() {
+        RepositoryRegistry registry = new RepositoryRegistry();
+        ModuleRepository first = registry.register(new ModuleRepository("central", "http://repo1.maven.org/maven2"));
+        ModuleRepository second = registry.register(new ModuleRepository("maven-central", "HTTP://repo1.maven.org:80/maven2/"));
+        assertSame(first, second);
+        assertEquals("central", second.getId());
+    }
+
+    @Test
+    public void reusedIdGetsSuffix() {
+        RepositoryRegistry registry = new RepositoryRegistry();
+        registry.register(new ModuleRepository("company", "http://repo.example.com/releases"));
+        assertEquals("company-2", registry.register(new ModuleRepository("company", "http://repo.example.com/snapshots")).getId());
+        assertEquals("company-3", registry.register(new ModuleRepository("company", "http://repo.example.com/thirdparty")).getId());
+    }
+
+    @Test
+    public void registerListDropsDuplicateUrls() {
+        RepositoryRegistry registry = new RepositoryRegistry();
+        List<ModuleRepository> repositories = registry.register(Arrays.asList(
+                new ModuleRepository("central", "http://repo1.maven.org/maven2"),
+                new ModuleRepository("codehaus", "http://repository.codehaus.org"),
+                new ModuleRepository("central-again", "http://repo1.maven.org/maven2/")));
+        assertEquals(2, repositories.size());
+        assertEquals("central", repositories.get(0).getId());
+        assertEquals("codehaus", repositories.get(1).getId());
+    }
+}